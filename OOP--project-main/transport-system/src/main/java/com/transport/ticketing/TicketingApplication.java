@@ -5,6 +5,26 @@ public class TicketingApplication {
 
     public static void main(String[] args) {
         System.out.println("Ticketing system bootstrap (no framework).");
-        new com.transport.ticketing.cli.Cli().run();
+        // Optional arguments: a data directory for the durable journal, --mapped-tickets to keep
+        // tickets in memory-mapped files under it, --node=N to draw node-aware ids so that
+        // several instances can later merge their data, and --shards=N to partition trips and
+        // their tickets into N stores with one sales writer each.
+        java.nio.file.Path dataDir = null;
+        boolean mappedTickets = false;
+        int shards = 0;
+        for (String arg : args) {
+            if ("--mapped-tickets".equals(arg)) {
+                mappedTickets = true;
+            } else if (arg.startsWith("--shards=")) {
+                shards = Integer.parseInt(arg.substring("--shards=".length()));
+            } else if (arg.startsWith("--node=")) {
+                int nodeId = Integer.parseInt(arg.substring("--node=".length()));
+                com.transport.ticketing.util.IdGenerator.useSnowflake(
+                        new com.transport.ticketing.util.SnowflakeIdGenerator(nodeId));
+            } else {
+                dataDir = java.nio.file.Path.of(arg);
+            }
+        }
+        new com.transport.ticketing.cli.Cli(dataDir, mappedTickets, shards).run();
     }
 }
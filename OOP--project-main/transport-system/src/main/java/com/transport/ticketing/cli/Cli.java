@@ -4,12 +4,14 @@ import com.transport.ticketing.exception.DomainException;
 import com.transport.ticketing.model.Role;
 import com.transport.ticketing.model.Trip;
 import com.transport.ticketing.model.TripRequest;
-import com.transport.ticketing.model.TripStatus;
 import com.transport.ticketing.model.Ticket;
 import com.transport.ticketing.model.User;
+import com.transport.ticketing.persistence.DurableStore;
 import com.transport.ticketing.repository.*;
 import com.transport.ticketing.service.*;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
@@ -18,32 +20,50 @@ import java.util.Locale;
 import java.util.Scanner;
 
 public class Cli {
+    private static final String ADMIN_EMAIL = "admin@example.com";
+    private static final String COMPANY_EMAIL = "company@example.com";
+    private static final String DISTRIBUTOR_EMAIL = "distributor@example.com";
+    private static final String CASHIER_EMAIL = "cashier@example.com";
+    private static final java.time.Duration SNAPSHOT_INTERVAL = java.time.Duration.ofMinutes(5);
+    private static final java.time.Duration ARCHIVE_INTERVAL = java.time.Duration.ofHours(1);
+    private static final java.time.Duration ARCHIVE_RETENTION = java.time.Duration.ofDays(30);
+    private static final java.time.Duration NOTIFICATION_READ_TTL = java.time.Duration.ofDays(7);
+    private static final int NOTIFICATIONS_PER_TYPE = 50;
+    private static final java.time.Duration SOLD_SUMMARY_WINDOW = java.time.Duration.ofSeconds(10);
+    private static final int FAN_OUT_WORKERS = 2;
+    private static final int FAN_OUT_QUEUE = 1024;
+    private static final int DEFAULT_INBOX_SIZE = 20;
+    private static final int DELIVERY_OUTBOX = 10_000;
+    private static final java.time.Duration DELIVERY_INTERVAL = java.time.Duration.ofSeconds(1);
+    private static final java.time.Duration DELIVERY_BACKOFF = java.time.Duration.ofSeconds(2);
+    private static final int DELIVERY_ATTEMPTS = 5;
+    private static final List<java.time.Duration> UPCOMING_ALERT_HORIZONS =
+            List.of(java.time.Duration.ofHours(24), java.time.Duration.ofHours(2));
+
     private final Scanner scanner = new Scanner(System.in);
 
     private final UserRepository userRepo = new UserRepository();
     private final CompanyRepository companyRepo = new CompanyRepository();
     private final DistributorRepository distributorRepo = new DistributorRepository();
     private final CashierRepository cashierRepo = new CashierRepository();
-    private final TripRepository tripRepo = new TripRepository();
+    private final TripRepository tripRepo;
     private final TripRequestRepository requestRepo = new TripRequestRepository();
-    private final TicketRepository ticketRepo = new TicketRepository();
+    private final TicketRepository ticketRepo;
     private final NotificationRepository notificationRepo = new NotificationRepository();
 
     private final UserService userService = new UserService(userRepo);
     private final CompanyService companyService = new CompanyService(companyRepo);
     private final DistributorService distributorService = new DistributorService(distributorRepo, cashierRepo, companyRepo);
-    private final TripService tripService = new TripService(tripRepo, requestRepo, companyRepo, distributorRepo);
-    private final TicketService ticketService = new TicketService(ticketRepo, tripRepo, cashierRepo, distributorRepo, companyRepo);
-    private final NotificationService notificationService = new NotificationService(notificationRepo);
-    private final NotificationCoordinator notificationCoordinator = new NotificationCoordinator(notificationService, distributorRepo, cashierRepo, ticketRepo, companyRepo);
-    private final ReportService reportService = new ReportService(companyRepo, distributorRepo, cashierRepo, tripRepo, ticketRepo);
-    private final RatingService ratingService = new RatingService(companyRepo, distributorRepo, cashierRepo, tripRepo, requestRepo);
-
-    {
-        // Integrate notification coordinator with services
-        tripService.setNotificationCoordinator(notificationCoordinator);
-        ticketService.setNotificationCoordinator(notificationCoordinator);
-    }
+    private final TripService tripService;
+    private final TicketService ticketService;
+    private final NotificationService notificationService =
+            new NotificationService(notificationRepo, NOTIFICATION_READ_TTL, NOTIFICATIONS_PER_TYPE);
+    private final NotificationCoordinator notificationCoordinator;
+    private final NotificationFanOut notificationFanOut = new NotificationFanOut(FAN_OUT_WORKERS, FAN_OUT_QUEUE);
+    private final DepartureScheduler departureScheduler;
+    private final NotificationDelivery notificationDelivery;
+    private final ReportService reportService;
+    private final RatingService ratingService;
 
     private User admin;
     private User companyUser;
@@ -53,8 +73,134 @@ public class Cli {
     private String distributorId;
     private String cashierId;
 
+    private final DurableStore durableStore;
+    private final ArchiveService archiveService;
+    private final TripPartitions partitions;
+
+    public Cli() {
+        this(null, false);
+    }
+
+    public Cli(Path dataDir) {
+        this(dataDir, false);
+    }
+
+    public Cli(Path dataDir, boolean mappedTickets) {
+        this(dataDir, mappedTickets, 0);
+    }
+
+    /**
+     * @param dataDir       directory for the write-ahead journal, or null to keep everything in memory
+     * @param mappedTickets keep tickets in memory-mapped files under dataDir instead of on the heap
+     * @param shards        number of trip partitions, each with its own trip and ticket stores and
+     *                      sales writer, or 0 for a single store
+     */
+    public Cli(Path dataDir, boolean mappedTickets, int shards) {
+        if (mappedTickets && dataDir == null) {
+            throw new IllegalArgumentException("Mapped tickets need a data directory");
+        }
+        if (dataDir != null) {
+            persistIds(dataDir);
+        }
+        if (shards > 0) {
+            partitions = new TripPartitions(shards);
+            tripRepo = new ShardedTripRepository(partitions);
+            // With mapped tickets the partition count must stay the same for a data directory.
+            ticketRepo = new ShardedTicketRepository(partitions, shard -> mappedTickets
+                    ? openMappedTickets(dataDir.resolve("tickets").resolve("shard-" + shard))
+                    : new TicketRepository());
+        } else {
+            partitions = null;
+            tripRepo = new TripRepository();
+            ticketRepo = mappedTickets ? openMappedTickets(dataDir.resolve("tickets")) : new TicketRepository();
+        }
+        tripService = new TripService(tripRepo, requestRepo, companyRepo, distributorRepo);
+        tripService.setPartitions(partitions);
+        ratingService = new RatingService(companyRepo, distributorRepo, cashierRepo, tripRepo, requestRepo);
+        ticketService = new TicketService(ticketRepo, tripRepo, cashierRepo, distributorRepo, companyRepo);
+        ticketService.setPartitions(partitions);
+        notificationCoordinator = new NotificationCoordinator(notificationService, distributorRepo, cashierRepo, ticketRepo, companyRepo,
+                SOLD_SUMMARY_WINDOW);
+        notificationCoordinator.setFanOut(notificationFanOut);
+        reportService = new ReportService(companyRepo, distributorRepo, cashierRepo, tripRepo, ticketRepo);
+
+        // Integrate notification coordinator with services
+        tripService.setNotificationCoordinator(notificationCoordinator);
+        departureScheduler = new DepartureScheduler(tripRepo, notificationCoordinator, UPCOMING_ALERT_HORIZONS);
+        tripService.setDepartureScheduler(departureScheduler);
+        ticketService.setNotificationCoordinator(notificationCoordinator);
+        notificationDelivery = new NotificationDelivery(openDeliveryChannels(dataDir), DELIVERY_OUTBOX,
+                DELIVERY_BACKOFF, DELIVERY_ATTEMPTS);
+        notificationService.setDelivery(notificationDelivery);
+
+        if (dataDir == null) {
+            durableStore = null;
+            archiveService = null;
+            return;
+        }
+        com.transport.ticketing.persistence.TripArchive archive =
+                new com.transport.ticketing.persistence.TripArchive(dataDir.resolve("archive"));
+        archiveService = new ArchiveService(tripRepo, ticketRepo, requestRepo, archive, ARCHIVE_RETENTION);
+        archiveService.setNotificationCoordinator(notificationCoordinator);
+        reportService.setArchive(archive);
+        durableStore = new DurableStore(dataDir)
+                .register("users", userRepo)
+                .register("companies", companyRepo)
+                .register("distributors", distributorRepo)
+                .register("cashiers", cashierRepo)
+                .register("trips", tripRepo)
+                .register("requests", requestRepo)
+                .register("notifications", notificationRepo);
+        if (!mappedTickets) {
+            // Mapped tickets are persisted by their own files.
+            durableStore.register("tickets", ticketRepo);
+        }
+    }
+
+    private static void persistIds(Path dataDir) {
+        try {
+            java.nio.file.Files.createDirectories(dataDir);
+            com.transport.ticketing.util.IdGenerator.persistTo(dataDir.resolve("ids.properties"));
+        } catch (IOException ex) {
+            throw new IllegalStateException("Cannot open id store: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Stand-ins for the e-mail and SMS gateways: files under dataDir/outbox, or counters in
+     * memory when there is no data directory.
+     */
+    private static List<DeliveryChannel> openDeliveryChannels(Path dataDir) {
+        if (dataDir == null) {
+            return List.of(new InMemoryDeliveryChannel("email"), new InMemoryDeliveryChannel("sms"));
+        }
+        try {
+            Path outbox = dataDir.resolve("outbox");
+            return List.of(new FileDeliveryChannel("email", outbox.resolve("email.log")),
+                    new FileDeliveryChannel("sms", outbox.resolve("sms.log")));
+        } catch (IOException ex) {
+            throw new IllegalStateException("Cannot open delivery outbox: " + ex.getMessage(), ex);
+        }
+    }
+
+    private static TicketRepository openMappedTickets(Path directory) {
+        try {
+            return new MappedTicketRepository(directory);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Cannot open ticket store: " + ex.getMessage(), ex);
+        }
+    }
+
     public void run() {
         printWelcome();
+        if (durableStore != null) {
+            recover();
+        }
+        notificationService.scheduleExisting();
+        notificationService.startSweeper();
+        departureScheduler.trackExisting();
+        departureScheduler.start();
+        notificationDelivery.start(DELIVERY_INTERVAL);
         println("");
         while (true) {
             print("> ");
@@ -79,6 +225,60 @@ public class Cli {
                 println("   Моля, опитайте отново или въведете 'help'.\n");
             }
         }
+        if (partitions != null) {
+            partitions.close();
+        }
+        departureScheduler.stop();
+        notificationCoordinator.stop();
+        notificationFanOut.close();
+        notificationDelivery.close();
+        notificationService.stopSweeper();
+        if (archiveService != null) {
+            archiveService.stop();
+        }
+        if (durableStore != null) {
+            try {
+                durableStore.close();
+                if (ticketRepo instanceof java.io.Closeable closeable) {
+                    closeable.close();
+                }
+            } catch (IOException ex) {
+                println("ГРЕШКА при затваряне на журнала: " + ex.getMessage());
+            }
+        }
+    }
+
+    private void recover() {
+        try {
+            DurableStore.RecoveryStats stats = durableStore.recover();
+            println("Възстановени " + stats.records() + " записа от снимка и журнал ("
+                    + (stats.bytes() / 1024) + " KB журнал) за " + stats.millis() + " ms.");
+            durableStore.startSnapshots(SNAPSHOT_INTERVAL);
+            archiveService.start(ARCHIVE_INTERVAL);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Cannot recover journal: " + ex.getMessage(), ex);
+        }
+        restoreSession();
+    }
+
+    private void restoreSession() {
+        admin = userService.findByEmail(ADMIN_EMAIL).orElse(null);
+        companyUser = userService.findByEmail(COMPANY_EMAIL).orElse(null);
+        distributorUser = userService.findByEmail(DISTRIBUTOR_EMAIL).orElse(null);
+        cashierUser = userService.findByEmail(CASHIER_EMAIL).orElse(null);
+        if (companyUser != null) {
+            companyId = companyRepo.findByOwnerUserId(companyUser.getId()).map(c -> c.getId()).orElse(null);
+        }
+        if (distributorUser != null) {
+            distributorId = distributorRepo.findByOwnerUserId(distributorUser.getId()).map(d -> d.getId()).orElse(null);
+        }
+        if (distributorId != null) {
+            cashierId = cashierRepo.findByDistributorId(distributorId).stream()
+                    .filter(c -> cashierUser != null && c.getUserId().equals(cashierUser.getId()))
+                    .map(c -> c.getId())
+                    .findFirst()
+                    .orElse(null);
+        }
     }
 
     private void printWelcome() {
@@ -105,10 +305,13 @@ public class Cli {
             case "sell-ticket" -> sellTicket(parts);
             case "report-trips" -> reportTrips(parts);
             case "report-tickets" -> reportTickets(parts);
+            case "report-archived-trips" -> reportArchivedTrips(parts);
+            case "archive-trips" -> archiveTrips();
             case "report-companies" -> reportCompanies(parts);
             case "report-distributors" -> reportDistributors(parts);
             case "report-cashiers" -> reportCashiers(parts);
             case "cancel-trip" -> cancelTrip(parts);
+            case "reschedule-trip" -> rescheduleTrip(parts);
             case "update-company" -> updateCompany(parts);
             case "update-distributor" -> updateDistributor(parts);
             case "update-cashier" -> updateCashier(parts);
@@ -116,7 +319,9 @@ public class Cli {
             case "rate-distributor" -> rateDistributor(parts);
             case "rate-cashier" -> rateCashier(parts);
             case "check-upcoming-trips" -> checkUpcomingTrips(parts);
-            case "notifications" -> notifications();
+            case "notifications" -> notifications(parts);
+            case "mark-all-read" -> markAllRead(parts);
+            case "notification-stats" -> notificationStats();
             case "who" -> who();
             default -> {
                 println("\nНепозната команда: '" + cmd + "'");
@@ -149,6 +354,9 @@ public class Cli {
         println("  cancel-trip <id>");
         println("                   - Отменя пътуване");
         println("                   Пример: cancel-trip <tripId>");
+        println("  reschedule-trip <id> <заминаване> [пристигане]");
+        println("                   - Променя часа на пътуване (пристигането се запазва спрямо заминаването)");
+        println("                   Пример: reschedule-trip <tripId> 2024-01-15T10:30");
         
         println("\nРАБОТА С БИЛЕТИ:");
         println("  sell-ticket <tripId> <място> <име_купувач> [контакт]");
@@ -162,6 +370,10 @@ public class Cli {
         println("  report-tickets <tripId> [от_дата] [до_дата]");
         println("                   - Отчет за билети за пътуване");
         println("                   Пример: report-tickets <tripId>");
+        println("  report-archived-trips [от_дата] [до_дата]");
+        println("                   - Отчет за архивирани пътувания (чете архива от диска)");
+        println("  archive-trips");
+        println("                   - Архивира приключили и отменени пътувания след срока за съхранение");
         println("  report-companies [от_дата] [до_дата]");
         println("                   - Отчет за компании с налични пътувания");
         println("  report-distributors");
@@ -189,7 +401,12 @@ public class Cli {
         println("                   - Оценява касиер (1.0 - 5.0)");
         
         println("\nИЗВЕСТИЯ:");
-        println("  notifications         - Показва всички известия");
+        println("  notifications [userId] [брой]");
+        println("                       - Показва всички известия или последните известия на потребител");
+        println("                       Пример: notifications <userId> 10");
+        println("  mark-all-read <userId>");
+        println("                       - Маркира всички известия на потребител като прочетени");
+        println("  notification-stats    - Опашки и закъснение при изпращане и доставка на известия");
         println("  check-upcoming-trips [часове]");
         println("                       - Проверява наближаващи пътувания с непродадени билети");
         println("                       Пример: check-upcoming-trips 24 (следващите 24 часа)");
@@ -203,22 +420,25 @@ public class Cli {
 
     private void seed() {
         println("\nИнициализиране на системата...");
-        userRepo.findAll().forEach(u -> userRepo.deleteById(u.getId()));
-        companyRepo.findAll().forEach(c -> companyRepo.deleteById(c.getId()));
-        distributorRepo.findAll().forEach(d -> distributorRepo.deleteById(d.getId()));
-        cashierRepo.findAll().forEach(c -> cashierRepo.deleteById(c.getId()));
-        tripRepo.findAll().forEach(t -> tripRepo.deleteById(t.getId()));
-        requestRepo.findAll().forEach(r -> requestRepo.deleteById(r.getId()));
-        ticketRepo.findAll().forEach(t -> ticketRepo.deleteById(t.getId()));
-        notificationRepo.findAll().forEach(n -> notificationRepo.deleteById(n.getId()));
+        userRepo.forEach(u -> userRepo.deleteById(u.getId()));
+        companyRepo.forEach(c -> companyRepo.deleteById(c.getId()));
+        distributorRepo.forEach(d -> distributorRepo.deleteById(d.getId()));
+        cashierRepo.forEach(c -> cashierRepo.deleteById(c.getId()));
+        tripRepo.forEach(t -> tripRepo.deleteById(t.getId()));
+        requestRepo.forEach(r -> requestRepo.deleteById(r.getId()));
+        ticketRepo.forEach(t -> ticketRepo.deleteById(t.getId()));
+        notificationRepo.forEach(n -> notificationRepo.deleteById(n.getId()));
         
-        // Reset ID generators
-        com.transport.ticketing.util.IdGenerator.reset();
+        // Reset ID generators. Not with a data directory: files kept there may still refer to
+        // ids below its high-water mark, and reissued ids would collide with them.
+        if (durableStore == null) {
+            com.transport.ticketing.util.IdGenerator.reset();
+        }
 
-        admin = userService.createUser("admin@example.com", "Admin", Role.ADMIN);
-        companyUser = userService.createUser("company@example.com", "CompanyOwner", Role.COMPANY);
-        distributorUser = userService.createUser("distributor@example.com", "DistributorOwner", Role.DISTRIBUTOR);
-        cashierUser = userService.createUser("cashier@example.com", "CashierUser", Role.CASHIER);
+        admin = userService.createUser(ADMIN_EMAIL, "Admin", Role.ADMIN);
+        companyUser = userService.createUser(COMPANY_EMAIL, "CompanyOwner", Role.COMPANY);
+        distributorUser = userService.createUser(DISTRIBUTOR_EMAIL, "DistributorOwner", Role.DISTRIBUTOR);
+        cashierUser = userService.createUser(CASHIER_EMAIL, "CashierUser", Role.CASHIER);
 
         companyId = companyService.createCompany(admin, "CityTransport", 5.0, "contact@company", companyUser.getId()).getId();
         distributorId = distributorService.createDistributor(admin, companyId, distributorUser.getId(), "BestTickets", 2.0, "contact@dist").getId();
@@ -328,9 +548,27 @@ public class Cli {
             to = parseDateTime(parts[2]);
         }
         
-        List<Trip> list = reportService.reportTrips(admin, from, to);
+        printTrips("ОТЧЕТ ЗА ПЪТУВАНИЯ", reportService.reportTrips(admin, from, to));
+    }
+
+    private void reportArchivedTrips(String[] parts) {
+        LocalDateTime from = parts.length >= 2 ? parseDateTime(parts[1]) : null;
+        LocalDateTime to = parts.length >= 3 ? parseDateTime(parts[2]) : null;
+        printTrips("ОТЧЕТ ЗА АРХИВИРАНИ ПЪТУВАНИЯ", reportService.reportArchivedTrips(admin, from, to));
+    }
+
+    private void archiveTrips() {
+        if (archiveService == null) {
+            println("\nАрхивът изисква директория за данни.\n");
+            return;
+        }
+        int archived = archiveService.archiveExpired(admin);
+        println("\nАрхивирани пътувания: " + archived + "\n");
+    }
+
+    private void printTrips(String title, List<Trip> list) {
         println("\n" + "=".repeat(60));
-        println("  ОТЧЕТ ЗА ПЪТУВАНИЯ");
+        println("  " + title);
         println("=".repeat(60));
         if (list.isEmpty()) {
             println("\n   Няма намерени пътувания.\n");
@@ -384,10 +622,38 @@ public class Cli {
         }
     }
 
-    private void notifications() {
-        List<com.transport.ticketing.model.Notification> all = notificationRepo.findAll();
+    private void notifications(String[] parts) {
+        if (parts.length < 2) {
+            printNotifications("ИЗВЕСТИЯ", notificationRepo.findAll());
+            return;
+        }
+        int limit = DEFAULT_INBOX_SIZE;
+        if (parts.length >= 3) {
+            try {
+                limit = Integer.parseInt(parts[2]);
+            } catch (NumberFormatException e) {
+                println("\nГРЕШКА: Броят трябва да е цяло число!\n");
+                return;
+            }
+        }
+        String userId = parts[1];
+        printNotifications("ИЗВЕСТИЯ НА " + userId + " (непрочетени: " + notificationService.countUnread(userId) + ")",
+                notificationService.getNewestForUser(userId, limit));
+    }
+
+    private void markAllRead(String[] parts) {
+        if (parts.length < 2) {
+            println("\nГРЕШКА: Липсва ID на потребител!");
+            println("   Използване: mark-all-read <userId>\n");
+            return;
+        }
+        int marked = notificationService.markAllRead(parts[1]);
+        println("\nМаркирани като прочетени: " + marked + "\n");
+    }
+
+    private void printNotifications(String title, List<com.transport.ticketing.model.Notification> all) {
         println("\n" + "=".repeat(60));
-        println("  ИЗВЕСТИЯ");
+        println("  " + title);
         println("=".repeat(60));
         if (all.isEmpty()) {
             println("\n   Няма нови известия.\n");
@@ -405,6 +671,25 @@ public class Cli {
         }
     }
 
+    private void notificationStats() {
+        NotificationFanOut.Metrics metrics = notificationFanOut.metrics();
+        println("\nИзпращане на известия:");
+        println("   В опашката: " + metrics.queueDepth());
+        println("   Подадени: " + metrics.submitted() + ", изпратени: " + metrics.completed());
+        println("   Изпълнени от извикващия (пълна опашка): " + metrics.ranByCaller());
+        println(String.format("   Закъснение: средно %.2f ms, максимално %.2f ms",
+                metrics.averageDrainMillis(), metrics.maxDrainMillis()));
+        NotificationDelivery.Metrics delivery = notificationDelivery.metrics();
+        println("\nДоставка по имейл/SMS:");
+        println("   В изходящата опашка: " + delivery.outboxDepth());
+        println("   Подадени: " + delivery.queued() + ", доставени: " + delivery.delivered()
+                + " в " + delivery.batches() + " пакета");
+        println("   Повторни опити: " + delivery.retried() + ", неуспешни: " + delivery.failed()
+                + ", отпаднали (пълна опашка): " + delivery.dropped());
+        println(String.format("   Закъснение: средно %.2f ms, максимално %.2f ms",
+                delivery.averageLatencyMillis(), delivery.maxLatencyMillis()) + "\n");
+    }
+
     private void reportCompanies(String[] parts) {
         LocalDateTime from = null;
         LocalDateTime to = null;
@@ -493,6 +778,27 @@ public class Cli {
         println("   Известия са изпратени до всички заинтересовани страни.\n");
     }
 
+    private void rescheduleTrip(String[] parts) {
+        if (parts.length < 3) {
+            println("\nГРЕШКА: Недостатъчно параметри!");
+            println("   Използване: reschedule-trip <tripId> <заминаване> [пристигане]");
+            println("   Пример: reschedule-trip <tripId> 2024-01-15T10:30\n");
+            return;
+        }
+        Trip current = tripService.getTrip(parts[1]);
+        LocalDateTime departure = parseDateTime(parts[2]);
+        if (departure == null) {
+            return;
+        }
+        LocalDateTime arrival = parts.length >= 4 ? parseDateTime(parts[3])
+                : departure.plus(java.time.Duration.between(current.getDeparture(), current.getArrival()));
+        Trip trip = tripService.rescheduleTrip(companyUser, current.getId(), departure, arrival);
+        println("\nПътуването е пренасрочено успешно!");
+        println("   ID: " + trip.getId());
+        println("   Заминаване: " + trip.getDeparture());
+        println("   Пристигане: " + trip.getArrival() + "\n");
+    }
+
     private LocalDateTime parseDateTime(String dateStr) {
         if (dateStr == null || dateStr.isEmpty() || "null".equalsIgnoreCase(dateStr)) {
             return null;
@@ -714,34 +1020,13 @@ public class Cli {
         }
         
         LocalDateTime now = LocalDateTime.now();
-        LocalDateTime checkUntil = now.plusHours(hoursAhead);
-
-        List<Trip> allTrips = tripRepo.findAll();
-        List<Trip> upcomingTrips = allTrips.stream()
-                .filter(trip -> trip.getStatus() == TripStatus.ACTIVE || trip.getStatus() == TripStatus.APPROVED)
-                .filter(trip -> trip.getDeparture().isAfter(now) && trip.getDeparture().isBefore(checkUntil))
-                .collect(java.util.stream.Collectors.toList());
-        
-        if (upcomingTrips.isEmpty()) {
-            println("\nНяма наближаващи пътувания в следващите " + hoursAhead + " часа.\n");
-            return;
-        }
-        
         println("\nПроверка за наближаващи пътувания (следващите " + hoursAhead + " часа)...");
-        notificationCoordinator.notifyUpcomingWithUnsold(upcomingTrips, now);
-        
-        long notifiedCount = upcomingTrips.stream()
-                .filter(trip -> {
-                    long sold = ticketRepo.findByTripId(trip.getId()).size();
-                    return sold < trip.getSeatsTotal();
-                })
-                .count();
-        
-        println("Проверени " + upcomingTrips.size() + " пътувания.");
-        if (notifiedCount > 0) {
-            println("Изпратени известия за " + notifiedCount + " пътувания с непродадени билети.\n");
+        // Trips already alerted for this or a closer horizon are skipped.
+        int alerted = departureScheduler.alertWithin(java.time.Duration.ofHours(hoursAhead), now);
+        if (alerted > 0) {
+            println("Проверени " + alerted + " нови пътувания; непродадените места са обявени.\n");
         } else {
-            println("Всички пътувания са напълно продадени.\n");
+            println("Няма нови наближаващи пътувания в следващите " + hoursAhead + " часа.\n");
         }
     }
 
@@ -0,0 +1,9 @@
+package com.transport.ticketing.exception;
+
+public class DuplicateKeyException extends ValidationException {
+    private static final long serialVersionUID = -150445851921038658L;
+
+    public DuplicateKeyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package com.transport.ticketing.exception;
+
+/**
+ * A versioned save found the entity changed since it was read. Read it again and retry.
+ */
+public class OptimisticLockException extends DomainException {
+    private static final long serialVersionUID = 2808020379070650433L;
+
+    public OptimisticLockException(String message) {
+        super(message);
+    }
+}
@@ -1,35 +1,107 @@
 package com.transport.ticketing.model;
 
+import com.transport.ticketing.util.EntityId;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.time.Instant;
-import java.util.Objects;
 
-public abstract class BaseEntity {
-    private final String id;
+public abstract class BaseEntity implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // Packed EntityId. Entities read from journals written before numeric ids only carry the
+    // textual id, so the key is derived from it on first use.
+    private long key;
+    // Textual form for display, formatted on first use.
+    private String id;
     private final Instant createdAt;
+    // Bumped by the repository on every save; 0 while the entity was never saved.
+    private long version;
+
+    protected BaseEntity(long key) {
+        this.key = key;
+        this.createdAt = Instant.now();
+    }
 
     protected BaseEntity(String id) {
+        this(id, Instant.now());
+    }
+
+    protected BaseEntity(String id, Instant createdAt) {
+        this.key = EntityId.parse(id);
+        if (key == 0) {
+            throw new IllegalArgumentException("Not an entity id: " + id);
+        }
         this.id = id;
-        this.createdAt = Instant.now();
+        this.createdAt = createdAt;
+    }
+
+    public long getKey() {
+        long current = key;
+        if (current == 0) {
+            current = EntityId.parse(id);
+            key = current;
+        }
+        return current;
     }
 
     public String getId() {
-        return id;
+        String current = id;
+        if (current == null) {
+            current = EntityId.format(key);
+            id = current;
+        }
+        return current;
     }
 
     public Instant getCreatedAt() {
         return createdAt;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * Deep copy, so a change can be prepared on a private instance and saved against the
+     * version it was read at while other threads keep reading the stored one.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends BaseEntity> T copy() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(this);
+            }
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                return (T) in.readObject();
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } catch (ClassNotFoundException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         BaseEntity that = (BaseEntity) o;
-        return id.equals(that.id);
+        return getKey() == that.getKey();
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id);
+        return Long.hashCode(getKey());
     }
 }
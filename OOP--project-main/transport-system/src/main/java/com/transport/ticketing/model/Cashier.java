@@ -1,8 +1,11 @@
 package com.transport.ticketing.model;
 
+import com.transport.ticketing.util.EntityId;
 import com.transport.ticketing.util.IdGenerator;
 
 public class Cashier extends BaseEntity {
+    private static final long serialVersionUID = 4798733163920453878L;
+
     private final String distributorId;
     private final String userId;
     private String name;
@@ -11,7 +14,7 @@ public class Cashier extends BaseEntity {
     private String contact;
 
     public Cashier(String distributorId, String userId, String name, double commission, String contact) {
-        super(IdGenerator.nextCashierId());
+        super(IdGenerator.nextKey(EntityId.Type.CASHIER));
         this.distributorId = distributorId;
         this.userId = userId;
         this.name = name;
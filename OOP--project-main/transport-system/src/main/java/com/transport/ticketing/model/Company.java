@@ -1,8 +1,11 @@
 package com.transport.ticketing.model;
 
+import com.transport.ticketing.util.EntityId;
 import com.transport.ticketing.util.IdGenerator;
 
 public class Company extends BaseEntity {
+    private static final long serialVersionUID = -7268609495502821841L;
+
     private final String ownerUserId;
     private String name;
     private double commission;
@@ -10,7 +13,7 @@ public class Company extends BaseEntity {
     private String contact;
 
     public Company(String ownerUserId, String name, double commission, String contact) {
-        super(IdGenerator.nextCompanyId());
+        super(IdGenerator.nextKey(EntityId.Type.COMPANY));
         this.ownerUserId = ownerUserId;
         this.name = name;
         this.commission = commission;
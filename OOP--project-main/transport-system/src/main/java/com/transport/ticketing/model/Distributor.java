@@ -1,8 +1,11 @@
 package com.transport.ticketing.model;
 
+import com.transport.ticketing.util.EntityId;
 import com.transport.ticketing.util.IdGenerator;
 
 public class Distributor extends BaseEntity {
+    private static final long serialVersionUID = -7596968047611306897L;
+
     private final String companyId;
     private final String ownerUserId;
     private String name;
@@ -11,7 +14,7 @@ public class Distributor extends BaseEntity {
     private String contact;
 
     public Distributor(String companyId, String ownerUserId, String name, double commission, String contact) {
-        super(IdGenerator.nextDistributorId());
+        super(IdGenerator.nextKey(EntityId.Type.DISTRIBUTOR));
         this.companyId = companyId;
         this.ownerUserId = ownerUserId;
         this.name = name;
@@ -1,16 +1,33 @@
 package com.transport.ticketing.model;
 
+import com.transport.ticketing.util.EntityId;
 import com.transport.ticketing.util.IdGenerator;
 import java.time.Instant;
 
 public class Notification extends BaseEntity {
+    private static final long serialVersionUID = 464086487848133947L;
+
     private final String userId;
     private final NotificationType type;
-    private final String payload;
+    // Arguments of the type's template; the text is only rendered when it is read.
+    private long[] arguments;
+    // Free text, used instead of the template when set.
+    private String payload;
     private Instant readAt;
 
+    /**
+     * A notification rendered from the type's template, with entity ids passed as their
+     * numeric keys.
+     */
+    public Notification(String userId, NotificationType type, long... arguments) {
+        super(IdGenerator.nextKey(EntityId.Type.NOTIFICATION));
+        this.userId = userId;
+        this.type = type;
+        setArguments(arguments);
+    }
+
     public Notification(String userId, NotificationType type, String payload) {
-        super(IdGenerator.nextNotificationId());
+        super(IdGenerator.nextKey(EntityId.Type.NOTIFICATION));
         this.userId = userId;
         this.type = type;
         this.payload = payload;
@@ -25,7 +42,20 @@ public class Notification extends BaseEntity {
     }
 
     public String getPayload() {
-        return payload;
+        return payload != null ? payload : type.render(arguments);
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+        this.arguments = null;
+    }
+
+    public void setArguments(long... arguments) {
+        if (arguments.length != type.getArgumentCount()) {
+            throw new IllegalArgumentException(type + " takes " + type.getArgumentCount() + " arguments");
+        }
+        this.arguments = arguments;
+        this.payload = null;
     }
 
     public Instant getReadAt() {
@@ -1,8 +1,49 @@
 package com.transport.ticketing.model;
 
+import com.transport.ticketing.util.EntityId;
+
+/**
+ * Each type carries the template its notifications are rendered from. "{id}" takes an entity
+ * id argument and "{n}" a count, in order.
+ */
 public enum NotificationType {
-    TRIP_REQUESTED,
-    TRIP_CANCELLED,
-    TICKETS_SOLD_SUMMARY,
-    UPCOMING_TRIP_UNSOLD
-}
+    TRIP_REQUESTED("Trip request submitted by distributor {id}"),
+    TRIP_CANCELLED("Trip {id} cancelled"),
+    TICKETS_SOLD_SUMMARY("Trip {id} sold {n} tickets"),
+    UPCOMING_TRIP_UNSOLD("Trip {id} departing soon has unsold tickets");
+
+    private final String template;
+    private final int argumentCount;
+
+    NotificationType(String template) {
+        this.template = template;
+        this.argumentCount = (int) template.chars().filter(c -> c == '{').count();
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public int getArgumentCount() {
+        return argumentCount;
+    }
+
+    public String render(long[] arguments) {
+        StringBuilder text = new StringBuilder(template.length() + 16);
+        int next = 0;
+        int from = 0;
+        int open;
+        while ((open = template.indexOf('{', from)) >= 0) {
+            int close = template.indexOf('}', open);
+            text.append(template, from, open);
+            long argument = arguments[next++];
+            if (template.startsWith("{id}", open)) {
+                text.append(EntityId.format(argument));
+            } else {
+                text.append(argument);
+            }
+            from = close + 1;
+        }
+        return text.append(template, from, template.length()).toString();
+    }
+}
@@ -1,9 +1,12 @@
 package com.transport.ticketing.model;
 
+import com.transport.ticketing.util.EntityId;
 import com.transport.ticketing.util.IdGenerator;
 import java.time.Instant;
 
 public class Ticket extends BaseEntity {
+    private static final long serialVersionUID = -2723356678525778066L;
+
     private final String tripId;
     private final int seatNumber;
     private final String cashierId;
@@ -13,7 +16,7 @@ public class Ticket extends BaseEntity {
     private TicketStatus status;
 
     public Ticket(String tripId, int seatNumber, String cashierId, String buyerName, String buyerContact) {
-        super(IdGenerator.nextTicketId());
+        super(IdGenerator.nextKey(EntityId.Type.TICKET));
         this.tripId = tripId;
         this.seatNumber = seatNumber;
         this.cashierId = cashierId;
@@ -23,6 +26,21 @@ public class Ticket extends BaseEntity {
         this.soldAt = Instant.now();
     }
 
+    /**
+     * Rebuilds a stored ticket with its original id instead of drawing a new one.
+     */
+    public Ticket(String id, Instant createdAt, String tripId, int seatNumber, String cashierId,
+                  String buyerName, String buyerContact, Instant soldAt, TicketStatus status) {
+        super(id, createdAt);
+        this.tripId = tripId;
+        this.seatNumber = seatNumber;
+        this.cashierId = cashierId;
+        this.buyerName = buyerName;
+        this.buyerContact = buyerContact;
+        this.soldAt = soldAt;
+        this.status = status;
+    }
+
     public String getTripId() {
         return tripId;
     }
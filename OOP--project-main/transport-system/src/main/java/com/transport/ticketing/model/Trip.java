@@ -1,11 +1,14 @@
 package com.transport.ticketing.model;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 public class Trip extends BaseEntity {
+    private static final long serialVersionUID = 2523879891678982464L;
+
     private final String organizerCompanyId;
     private String type;
     private String destination;
@@ -14,6 +17,8 @@ public class Trip extends BaseEntity {
     private int seatsTotal;
     private int perPersonLimit;
     private TripStatus status;
+    // Smallest horizon an upcoming-unsold alert was sent for at the current departure, or null.
+    private Duration alertedHorizon;
     private final List<String> transportTypes = new ArrayList<>();
     private final List<String> approvedDistributorIds = new ArrayList<>();
 
@@ -25,7 +30,7 @@ public class Trip extends BaseEntity {
                 int seatsTotal,
                 int perPersonLimit,
                 List<String> transportTypes) {
-        super(com.transport.ticketing.util.IdGenerator.nextTripId());
+        super(com.transport.ticketing.util.IdGenerator.nextKey(com.transport.ticketing.util.EntityId.Type.TRIP));
         this.organizerCompanyId = organizerCompanyId;
         this.type = type;
         this.destination = destination;
@@ -99,6 +104,14 @@ public class Trip extends BaseEntity {
         this.status = status;
     }
 
+    public Duration getAlertedHorizon() {
+        return alertedHorizon;
+    }
+
+    public void setAlertedHorizon(Duration alertedHorizon) {
+        this.alertedHorizon = alertedHorizon;
+    }
+
     public List<String> getTransportTypes() {
         return Collections.unmodifiableList(transportTypes);
     }
@@ -1,14 +1,17 @@
 package com.transport.ticketing.model;
 
+import com.transport.ticketing.util.EntityId;
 import com.transport.ticketing.util.IdGenerator;
 
 public class TripRequest extends BaseEntity {
+    private static final long serialVersionUID = -3953215367873874232L;
+
     private final String tripId;
     private final String distributorId;
     private RequestStatus status;
 
     public TripRequest(String tripId, String distributorId) {
-        super(IdGenerator.nextRequestId());
+        super(IdGenerator.nextKey(EntityId.Type.REQUEST));
         this.tripId = tripId;
         this.distributorId = distributorId;
         this.status = RequestStatus.REQUESTED;
@@ -1,15 +1,18 @@
 package com.transport.ticketing.model;
 
+import com.transport.ticketing.util.EntityId;
 import com.transport.ticketing.util.IdGenerator;
 
 public class User extends BaseEntity {
+    private static final long serialVersionUID = -317711345551503241L;
+
     private final String email;
     private String displayName;
     private Role role;
     private boolean active;
 
     public User(String email, String displayName, Role role) {
-        super(IdGenerator.nextUserId());
+        super(IdGenerator.nextKey(EntityId.Type.USER));
         this.email = email;
         this.displayName = displayName;
         this.role = role;
@@ -0,0 +1,18 @@
+package com.transport.ticketing.persistence;
+
+import com.transport.ticketing.model.Ticket;
+import com.transport.ticketing.model.Trip;
+import com.transport.ticketing.model.TripRequest;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A trip moved to the {@link TripArchive}, together with its tickets and distributor requests.
+ */
+public record ArchivedTrip(Trip trip, List<Ticket> tickets, List<TripRequest> requests) implements Serializable {
+    public ArchivedTrip {
+        tickets = List.copyOf(tickets);
+        requests = List.copyOf(requests);
+    }
+}
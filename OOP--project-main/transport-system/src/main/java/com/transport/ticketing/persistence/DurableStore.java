@@ -0,0 +1,203 @@
+package com.transport.ticketing.persistence;
+
+import com.transport.ticketing.exception.DuplicateKeyException;
+import com.transport.ticketing.model.BaseEntity;
+import com.transport.ticketing.repository.CommitBarrier;
+import com.transport.ticketing.repository.InMemoryCrudRepository;
+import com.transport.ticketing.repository.WriteListener;
+import com.transport.ticketing.util.ErrorReporter;
+import com.transport.ticketing.util.IdGenerator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes a set of repositories durable. Startup loads the latest snapshot and replays only the
+ * journal segments written after it; afterwards every save/delete is journaled, and periodic
+ * snapshots let older segments be deleted so recovery time stays bounded.
+ */
+public final class DurableStore implements Closeable, WriteListener {
+    private final Path directory;
+    private final Map<String, InMemoryCrudRepository<?>> repositories = new LinkedHashMap<>();
+    private final Object snapshotLock = new Object();
+    private Journal journal;
+    private ScheduledExecutorService snapshotter;
+    private volatile long appendedAtLastSnapshot;
+
+    public DurableStore(Path directory) {
+        this.directory = directory;
+    }
+
+    public DurableStore register(String name, InMemoryCrudRepository<?> repository) {
+        if (journal != null) {
+            throw new IllegalStateException("Repositories must be registered before recovery");
+        }
+        repositories.put(name, repository);
+        return this;
+    }
+
+    /**
+     * Rebuilds every registered repository (and so its indexes) from the latest snapshot plus
+     * the journal tail, then starts journaling new writes into a fresh segment.
+     */
+    public RecoveryStats recover() throws IOException {
+        long started = System.nanoTime();
+        Files.createDirectories(directory);
+        long records = 0;
+        long firstSegment = 0;
+
+        List<Long> snapshots = Snapshot.list(directory);
+        if (!snapshots.isEmpty()) {
+            firstSegment = snapshots.get(snapshots.size() - 1);
+            records += Snapshot.read(Snapshot.path(directory, firstSegment), this::restoreFromSnapshot);
+        }
+        long nextSegment = firstSegment;
+        long bytes = 0;
+        for (long segment : Journal.segments(directory)) {
+            if (segment >= firstSegment) {
+                Path file = Journal.segmentPath(directory, segment);
+                records += Journal.replay(file, this::apply);
+                bytes += Files.size(file);
+                nextSegment = segment + 1;
+            }
+        }
+
+        journal = Journal.open(directory, nextSegment);
+        repositories.forEach((name, repository) -> repository.setWriteListener(name, this));
+        long millis = (System.nanoTime() - started) / 1_000_000;
+        return new RecoveryStats(records, bytes, millis);
+    }
+
+    /**
+     * Writes a snapshot of all repositories while writers keep running, then deletes the journal
+     * segments and snapshots it supersedes. Returns the number of entities written.
+     */
+    public long snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            long appended = journal.appendedRecords();
+            long segment;
+            try {
+                // Queued while no write is half applied: a record queued before the rotation has
+                // its entity already in the store, so the snapshot below sees it, or something
+                // newer, before that segment is deleted.
+                segment = CommitBarrier.between(journal::rotate).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof IOException io) {
+                    throw io;
+                }
+                throw e;
+            }
+            long written = Snapshot.write(directory, segment, repositories);
+            appendedAtLastSnapshot = appended;
+            for (long old : Journal.segments(directory)) {
+                if (old < segment) {
+                    Files.deleteIfExists(Journal.segmentPath(directory, old));
+                }
+            }
+            for (long old : Snapshot.list(directory)) {
+                if (old < segment) {
+                    Files.deleteIfExists(Snapshot.path(directory, old));
+                }
+            }
+            return written;
+        }
+    }
+
+    /**
+     * Takes a snapshot in the background every interval, skipping intervals without writes.
+     */
+    public void startSnapshots(Duration interval) {
+        if (snapshotter != null) {
+            return;
+        }
+        snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = interval.toMillis();
+        snapshotter.scheduleWithFixedDelay(() -> {
+            if (journal.appendedRecords() == appendedAtLastSnapshot) {
+                return;
+            }
+            try {
+                snapshot();
+            } catch (IOException | RuntimeException e) {
+                // Keep the journal segments; the next run retries.
+                ErrorReporter.report("Snapshot failed", e);
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<Void> saved(String repository, BaseEntity entity) {
+        return journal.append(JournalRecord.save(repository, entity));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleted(String repository, String id) {
+        return journal.append(JournalRecord.delete(repository, id));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (snapshotter != null) {
+            snapshotter.shutdownNow();
+            try {
+                snapshotter.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        repositories.values().forEach(repository -> repository.setWriteListener(null, null));
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private void apply(JournalRecord record) {
+        InMemoryCrudRepository<?> repository = repositories.get(record.getRepository());
+        if (repository == null) {
+            return;
+        }
+        if (record.getOp() == JournalRecord.Op.SAVE) {
+            restore(repository, record.getEntity());
+            IdGenerator.observe(record.getId());
+        } else {
+            repository.deleteById(record.getId());
+        }
+    }
+
+    private void restoreFromSnapshot(String name, BaseEntity entity) {
+        InMemoryCrudRepository<?> repository = repositories.get(name);
+        if (repository == null) {
+            return;
+        }
+        try {
+            restore(repository, entity);
+        } catch (DuplicateKeyException e) {
+            // A fuzzy snapshot can hold an entity deleted while it ran next to the one that
+            // replaced it; the replacement is journaled after the snapshot and replayed later.
+        }
+        IdGenerator.observe(entity.getId());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends BaseEntity> void restore(InMemoryCrudRepository<T> repository, BaseEntity entity) {
+        repository.save((T) entity);
+    }
+
+    public record RecoveryStats(long records, long bytes, long millis) {
+    }
+}
@@ -0,0 +1,300 @@
+package com.transport.ticketing.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log split into numbered segment files. Each frame is
+ * [length][crc32][payload]. Appends are queued and a single writer thread flushes whatever has
+ * accumulated with one write and one fsync, so concurrent writers share the cost of
+ * {@link FileChannel#force}.
+ */
+public final class Journal implements Closeable {
+    private static final int MAX_BATCH = 1024;
+    private static final int HEADER_BYTES = 8;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong appended = new AtomicLong();
+    private final Thread writer;
+    private FileChannel channel;
+    private volatile long segment;
+    private volatile boolean open = true;
+    // Set when a failed write could be neither cut off nor left behind in an older segment.
+    private IOException damaged;
+
+    private Journal(Path directory, long segment) throws IOException {
+        this.directory = directory;
+        this.segment = segment;
+        this.channel = openSegment(segment);
+        this.writer = new Thread(this::writeLoop, "journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Starts appending to a fresh segment with the given number.
+     */
+    public static Journal open(Path directory, long segment) throws IOException {
+        return new Journal(directory, segment);
+    }
+
+    public static Path segmentPath(Path directory, long segment) {
+        return directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Segment numbers present in the directory, ascending.
+     */
+    public static List<Long> segments(Path directory) throws IOException {
+        return FileSequence.list(directory, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Feeds every intact record of one segment to the consumer and returns the record count. A
+     * torn or corrupt tail (e.g. from a crash mid-write) ends the replay of that segment.
+     */
+    public static long replay(Path file, Consumer<JournalRecord> consumer) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        long records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = in.readInt();
+                    int crc = in.readInt();
+                    if (length < 0) {
+                        break;
+                    }
+                    payload = in.readNBytes(length);
+                    if (payload.length != length || checksum(payload) != crc) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                consumer.accept(JournalRecord.decode(payload));
+                records++;
+            }
+        }
+        return records;
+    }
+
+    public CompletableFuture<Void> append(JournalRecord record) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        if (!open) {
+            done.completeExceptionally(new IOException("Journal is closed"));
+            return done;
+        }
+        byte[] payload = record.encode();
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        frame.putInt(payload.length).putInt(checksum(payload)).put(payload).flip();
+        enqueue(new Pending(frame, done, null));
+        appended.incrementAndGet();
+        return done;
+    }
+
+    /**
+     * Closes the current segment and continues in the next one. Every append issued before this
+     * call lands in an older segment; the future yields the number of the new segment.
+     */
+    public CompletableFuture<Long> rotate() {
+        CompletableFuture<Long> rotated = new CompletableFuture<>();
+        if (!open) {
+            rotated.completeExceptionally(new IOException("Journal is closed"));
+            return rotated;
+        }
+        enqueue(new Pending(null, null, rotated));
+        return rotated;
+    }
+
+    public long currentSegment() {
+        return segment;
+    }
+
+    /**
+     * Number of records appended since the journal was opened.
+     */
+    public long appendedRecords() {
+        return appended.get();
+    }
+
+    /**
+     * Writes out everything appended before the call, then closes the segment. Appends that
+     * race with closing either make it into the last batch or fail.
+     */
+    @Override
+    public void close() throws IOException {
+        open = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Pending> stranded = new ArrayList<>();
+        queue.drainTo(stranded);
+        stranded.forEach(pending -> pending.fail(new IOException("Journal is closed")));
+        channel.close();
+    }
+
+    /**
+     * Queues the write, or fails it if the journal started closing meanwhile and the writer
+     * may already have stopped. Whoever removes it from the queue owns it: the writer, close(),
+     * or this method.
+     */
+    private void enqueue(Pending pending) {
+        queue.add(pending);
+        if (!open && queue.remove(pending)) {
+            pending.fail(new IOException("Journal is closed"));
+        }
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(segmentPath(directory, number),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>();
+        while (open || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void process(List<Pending> batch) {
+        int start = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Pending pending = batch.get(i);
+            if (pending.rotated() != null) {
+                flush(batch.subList(start, i));
+                rotateSegment(pending.rotated());
+                start = i + 1;
+            }
+        }
+        flush(batch.subList(start, batch.size()));
+    }
+
+    private void flush(List<Pending> writes) {
+        if (writes.isEmpty()) {
+            return;
+        }
+        if (damaged != null) {
+            IOException e = new IOException("Journal segment is damaged", damaged);
+            writes.forEach(write -> write.fail(e));
+            return;
+        }
+        long intact = -1;
+        try {
+            intact = channel.size();
+            ByteBuffer[] frames = new ByteBuffer[writes.size()];
+            long remaining = 0;
+            for (int i = 0; i < frames.length; i++) {
+                frames[i] = writes.get(i).frame();
+                remaining += frames[i].remaining();
+            }
+            while (remaining > 0) {
+                remaining -= channel.write(frames);
+            }
+            channel.force(false);
+            writes.forEach(write -> write.done().complete(null));
+        } catch (IOException e) {
+            if (intact >= 0) {
+                discardTail(intact, e);
+            }
+            writes.forEach(write -> write.fail(e));
+        }
+    }
+
+    /**
+     * Cuts a failed batch off the segment, so the frames written after it are not stranded
+     * behind a torn one that replay stops at. If that fails too, continues in a fresh segment;
+     * replay then ends the damaged one at the torn frame.
+     */
+    private void discardTail(long intact, IOException cause) {
+        try {
+            channel.truncate(intact);
+            channel.force(false);
+            return;
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+        long torn = segment;
+        try {
+            switchTo(openSegment(torn + 1));
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+            if (segment == torn) {
+                damaged = cause;
+            }
+        }
+    }
+
+    private void rotateSegment(CompletableFuture<Long> rotated) {
+        try {
+            FileChannel next = openSegment(segment + 1);
+            channel.force(true);
+            switchTo(next);
+            rotated.complete(segment);
+        } catch (IOException e) {
+            rotated.completeExceptionally(e);
+        }
+    }
+
+    private void switchTo(FileChannel next) throws IOException {
+        FileChannel previous = channel;
+        channel = next;
+        segment++;
+        damaged = null;
+        previous.close();
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private record Pending(ByteBuffer frame, CompletableFuture<Void> done, CompletableFuture<Long> rotated) {
+        void fail(IOException e) {
+            if (done != null) {
+                done.completeExceptionally(e);
+            } else {
+                rotated.completeExceptionally(e);
+            }
+        }
+    }
+}
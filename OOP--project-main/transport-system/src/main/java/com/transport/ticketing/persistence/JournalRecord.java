@@ -0,0 +1,92 @@
+package com.transport.ticketing.persistence;
+
+import com.transport.ticketing.model.BaseEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * One repository write: a saved entity or a deleted id.
+ */
+public final class JournalRecord {
+    public enum Op {
+        SAVE,
+        DELETE
+    }
+
+    private final Op op;
+    private final String repository;
+    private final String id;
+    private final BaseEntity entity;
+
+    private JournalRecord(Op op, String repository, String id, BaseEntity entity) {
+        this.op = op;
+        this.repository = repository;
+        this.id = id;
+        this.entity = entity;
+    }
+
+    public static JournalRecord save(String repository, BaseEntity entity) {
+        return new JournalRecord(Op.SAVE, repository, entity.getId(), entity);
+    }
+
+    public static JournalRecord delete(String repository, String id) {
+        return new JournalRecord(Op.DELETE, repository, id, null);
+    }
+
+    public Op getOp() {
+        return op;
+    }
+
+    public String getRepository() {
+        return repository;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public BaseEntity getEntity() {
+        return entity;
+    }
+
+    byte[] encode() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(op.ordinal());
+            out.writeUTF(repository);
+            out.writeUTF(id);
+            if (op == Op.SAVE) {
+                ObjectOutputStream objects = new ObjectOutputStream(out);
+                objects.writeObject(entity);
+                objects.flush();
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static JournalRecord decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        Op op = Op.values()[in.readUnsignedByte()];
+        String repository = in.readUTF();
+        String id = in.readUTF();
+        if (op == Op.DELETE) {
+            return delete(repository, id);
+        }
+        try {
+            BaseEntity entity = (BaseEntity) new ObjectInputStream(in).readObject();
+            return new JournalRecord(Op.SAVE, repository, id, entity);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Unreadable journal entity " + id, e);
+        }
+    }
+}
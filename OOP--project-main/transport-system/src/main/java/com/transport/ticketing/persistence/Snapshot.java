@@ -0,0 +1,109 @@
+package com.transport.ticketing.persistence;
+
+import com.transport.ticketing.model.BaseEntity;
+import com.transport.ticketing.repository.InMemoryCrudRepository;
+import com.transport.ticketing.util.DirectorySync;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Full copy of every repository, tagged with the journal segment that continues after it.
+ * Written to a temporary file, fsynced and renamed, so a visible snapshot is always complete.
+ */
+final class Snapshot {
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".snap";
+    private static final int MAGIC = 0x54534E50;
+    // Resetting the stream bounds the back-reference table kept by ObjectOutputStream.
+    private static final int RESET_EVERY = 1024;
+
+    private Snapshot() {}
+
+    static Path path(Path directory, long segment) {
+        return directory.resolve(String.format("%s%010d%s", PREFIX, segment, SUFFIX));
+    }
+
+    static List<Long> list(Path directory) throws IOException {
+        return FileSequence.list(directory, PREFIX, SUFFIX);
+    }
+
+    /**
+     * Iterates the live repositories without blocking writers. Entities changed while the
+     * snapshot runs are journaled in the segment it is tagged with, so replaying that segment
+     * on top of the snapshot restores a consistent state.
+     */
+    static long write(Path directory, long segment, Map<String, InMemoryCrudRepository<?>> repositories)
+            throws IOException {
+        Path target = path(directory, segment);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        long[] written = {0};
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+             ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(MAGIC);
+            for (Map.Entry<String, InMemoryCrudRepository<?>> repository : repositories.entrySet()) {
+                out.writeBoolean(true);
+                out.writeUTF(repository.getKey());
+                repository.getValue().forEach(entity -> {
+                    try {
+                        out.writeObject(entity);
+                        if (++written[0] % RESET_EVERY == 0) {
+                            out.reset();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                out.writeObject(null);
+            }
+            out.writeBoolean(false);
+            out.writeInt(MAGIC);
+            out.flush();
+            file.getFD().sync();
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(temp);
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        // The journal segments it supersedes are deleted next; the rename must survive that.
+        DirectorySync.sync(directory);
+        return written[0];
+    }
+
+    static long read(Path file, BiConsumer<String, BaseEntity> consumer) throws IOException {
+        long read = 0;
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a snapshot: " + file);
+            }
+            while (in.readBoolean()) {
+                String repository = in.readUTF();
+                Object entity;
+                while ((entity = in.readObject()) != null) {
+                    consumer.accept(repository, (BaseEntity) entity);
+                    read++;
+                }
+            }
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Truncated snapshot: " + file);
+            }
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Unreadable snapshot " + file, e);
+        }
+        return read;
+    }
+}
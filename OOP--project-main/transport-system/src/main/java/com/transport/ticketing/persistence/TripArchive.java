@@ -0,0 +1,319 @@
+package com.transport.ticketing.persistence;
+
+import com.transport.ticketing.model.Ticket;
+import com.transport.ticketing.model.Trip;
+import com.transport.ticketing.model.TripRequest;
+import com.transport.ticketing.util.DirectorySync;
+import com.transport.ticketing.util.EntityId;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cold storage for finished trips. Trips are grouped by departure month into a directory per
+ * month (archive/2024-05/), and every archiving run adds one gzip segment per month it touches,
+ * sorted by departure. Segments are written to a temporary file, fsynced and renamed, and never
+ * change afterwards.
+ * <p>
+ * Nothing is kept in memory up front: a month is read when a query needs it, and only the few
+ * most recently used months stay cached. Lookups by trip id go through a small index file
+ * (trip id -> departure month, 12 bytes per trip) appended after the segments of every run,
+ * so they read at most one month.
+ */
+public final class TripArchive {
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".gz";
+    private static final int MAGIC = 0x54415243;
+    private static final int CACHED_MONTHS = 4;
+    private static final String INDEX = "trip-months.idx";
+    private static final Comparator<ArchivedTrip> BY_DEPARTURE = Comparator
+            .comparing((ArchivedTrip archived) -> departureOf(archived.trip()))
+            .thenComparingLong(archived -> archived.trip().getKey());
+
+    private final Path directory;
+    // Guarded by this.
+    private final Map<YearMonth, List<ArchivedTrip>> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<YearMonth, List<ArchivedTrip>> eldest) {
+            return size() > CACHED_MONTHS;
+        }
+    };
+
+    // Trip key -> departure month, loaded on first use. Guarded by this.
+    private Map<Long, YearMonth> monthsByTrip;
+
+    public TripArchive(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Writes the trips into new segments, one per departure month. Once this returns they may be
+     * removed from the live repositories.
+     */
+    public synchronized void append(List<ArchivedTrip> trips) throws IOException {
+        Map<Long, YearMonth> index = index();
+        Map<YearMonth, List<ArchivedTrip>> byMonth = new TreeMap<>();
+        for (ArchivedTrip archived : trips) {
+            byMonth.computeIfAbsent(YearMonth.from(departureOf(archived.trip())), month -> new ArrayList<>())
+                    .add(archived);
+        }
+        for (Map.Entry<YearMonth, List<ArchivedTrip>> month : byMonth.entrySet()) {
+            List<ArchivedTrip> sorted = new ArrayList<>(month.getValue());
+            sorted.sort(BY_DEPARTURE);
+            writeSegment(monthDirectory(month.getKey()), sorted);
+            cache.remove(month.getKey());
+        }
+        // Written after the segments: an entry always points at a month that has the trip.
+        appendIndex(directory.resolve(INDEX), trips);
+        for (ArchivedTrip archived : trips) {
+            index.put(archived.trip().getKey(), YearMonth.from(departureOf(archived.trip())));
+        }
+    }
+
+    /**
+     * Archived trips departing within [from, to], ordered by departure. A null bound is open.
+     */
+    public List<ArchivedTrip> findByDepartureBetween(LocalDateTime from, LocalDateTime to) {
+        List<ArchivedTrip> found = new ArrayList<>();
+        for (YearMonth month : months()) {
+            if ((from != null && month.isBefore(YearMonth.from(from)))
+                    || (to != null && month.isAfter(YearMonth.from(to)))) {
+                continue;
+            }
+            for (ArchivedTrip archived : month(month)) {
+                LocalDateTime departure = departureOf(archived.trip());
+                if ((from == null || !departure.isBefore(from)) && (to == null || !departure.isAfter(to))) {
+                    found.add(archived);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds the trip's month in the index and reads only that month.
+     */
+    public synchronized Optional<ArchivedTrip> findByTripId(String tripId) {
+        long key = EntityId.parse(tripId);
+        YearMonth month;
+        try {
+            month = key == 0 ? null : index().get(key);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        if (month == null) {
+            return Optional.empty();
+        }
+        return month(month).stream().filter(archived -> archived.trip().getKey() == key).findFirst();
+    }
+
+    /**
+     * Months that hold archived trips, oldest first.
+     */
+    public List<YearMonth> months() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> entries = Files.list(directory)) {
+            return entries.filter(Files::isDirectory)
+                    .map(entry -> parseMonth(entry.getFileName().toString()))
+                    .flatMap(Optional::stream)
+                    .sorted()
+                    .toList();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * All trips archived for the month, ordered by departure. A trip archived more than once
+     * (after a crash while its live copy was being removed) is returned once: the trip as last
+     * written, with the tickets and requests of all its copies, so a copy written after some
+     * tickets were already removed loses none of them.
+     */
+    public synchronized List<ArchivedTrip> month(YearMonth month) {
+        List<ArchivedTrip> cached = cache.get(month);
+        if (cached != null) {
+            return cached;
+        }
+        Path monthDirectory = monthDirectory(month);
+        Map<Long, ArchivedTrip> byTrip = new HashMap<>();
+        try {
+            for (long segment : FileSequence.list(monthDirectory, PREFIX, SUFFIX)) {
+                for (ArchivedTrip archived : readSegment(segmentPath(monthDirectory, segment))) {
+                    byTrip.merge(archived.trip().getKey(), archived, TripArchive::merge);
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        List<ArchivedTrip> loaded = new ArrayList<>(byTrip.values());
+        loaded.sort(BY_DEPARTURE);
+        List<ArchivedTrip> result = List.copyOf(loaded);
+        cache.put(month, result);
+        return result;
+    }
+
+    private static ArchivedTrip merge(ArchivedTrip earlier, ArchivedTrip later) {
+        Map<Long, Ticket> tickets = new LinkedHashMap<>();
+        earlier.tickets().forEach(ticket -> tickets.put(ticket.getKey(), ticket));
+        later.tickets().forEach(ticket -> tickets.put(ticket.getKey(), ticket));
+        Map<Long, TripRequest> requests = new LinkedHashMap<>();
+        earlier.requests().forEach(request -> requests.put(request.getKey(), request));
+        later.requests().forEach(request -> requests.put(request.getKey(), request));
+        return new ArchivedTrip(later.trip(), new ArrayList<>(tickets.values()), new ArrayList<>(requests.values()));
+    }
+
+    private Map<Long, YearMonth> index() throws IOException {
+        if (monthsByTrip != null) {
+            return monthsByTrip;
+        }
+        Path file = directory.resolve(INDEX);
+        Map<Long, YearMonth> index = new HashMap<>();
+        if (Files.exists(file)) {
+            readIndex(file, index);
+        }
+        monthsByTrip = index;
+        return index;
+    }
+
+    private static void appendIndex(Path file, List<ArchivedTrip> trips) throws IOException {
+        Files.createDirectories(file.getParent());
+        boolean created = !Files.exists(file);
+        try (FileOutputStream stream = new FileOutputStream(file.toFile(), true)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            for (ArchivedTrip archived : trips) {
+                writeIndexEntry(out, archived.trip().getKey(), YearMonth.from(departureOf(archived.trip())));
+            }
+            out.flush();
+            stream.getFD().sync();
+        }
+        if (created) {
+            DirectorySync.sync(file.getParent());
+        }
+    }
+
+    private static void writeIndexEntry(DataOutputStream out, long tripKey, YearMonth month) throws IOException {
+        out.writeLong(tripKey);
+        out.writeInt(month.getYear() * 12 + month.getMonthValue() - 1);
+    }
+
+    /**
+     * Reads the entries in order, so a trip archived twice keeps the month written last. A
+     * torn last entry (from a crash mid-append) is ignored; its trip was still live then.
+     */
+    private static void readIndex(Path file, Map<Long, YearMonth> index) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                long tripKey;
+                int month;
+                try {
+                    tripKey = in.readLong();
+                    month = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                index.put(tripKey, YearMonth.of(Math.floorDiv(month, 12), Math.floorMod(month, 12) + 1));
+            }
+        }
+    }
+
+    private Path monthDirectory(YearMonth month) {
+        return directory.resolve(month.toString());
+    }
+
+    private static Path segmentPath(Path monthDirectory, long segment) {
+        return monthDirectory.resolve(String.format("%s%010d%s", PREFIX, segment, SUFFIX));
+    }
+
+    private void writeSegment(Path monthDirectory, List<ArchivedTrip> trips) throws IOException {
+        if (!Files.isDirectory(monthDirectory)) {
+            Files.createDirectories(monthDirectory);
+            DirectorySync.sync(directory);
+        }
+        List<Long> existing = FileSequence.list(monthDirectory, PREFIX, SUFFIX);
+        long segment = existing.isEmpty() ? 1 : existing.get(existing.size() - 1) + 1;
+        Path target = segmentPath(monthDirectory, segment);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+            GZIPOutputStream gzip = new GZIPOutputStream(new BufferedOutputStream(file, 1 << 16));
+            ObjectOutputStream out = new ObjectOutputStream(gzip);
+            out.writeInt(MAGIC);
+            out.writeInt(trips.size());
+            for (ArchivedTrip archived : trips) {
+                out.writeObject(archived);
+                out.reset();
+            }
+            out.writeInt(MAGIC);
+            out.flush();
+            gzip.finish();
+            gzip.flush();
+            file.getFD().sync();
+            out.close();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        // The rename must be on disk before the live copies are removed.
+        DirectorySync.sync(monthDirectory);
+    }
+
+    private static List<ArchivedTrip> readSegment(Path file) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(
+                new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an archive segment: " + file);
+            }
+            int count = in.readInt();
+            List<ArchivedTrip> trips = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                trips.add((ArchivedTrip) in.readObject());
+            }
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Truncated archive segment: " + file);
+            }
+            return trips;
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Unreadable archive segment " + file, e);
+        }
+    }
+
+    private static LocalDateTime departureOf(Trip trip) {
+        // Trips are archived after they end, so one of the two is always set.
+        return trip.getDeparture() != null ? trip.getDeparture() : trip.getArrival();
+    }
+
+    private static Optional<YearMonth> parseMonth(String name) {
+        try {
+            return Optional.of(YearMonth.parse(name));
+        } catch (DateTimeParseException ex) {
+            return Optional.empty();
+        }
+    }
+}
@@ -3,12 +3,15 @@ package com.transport.ticketing.repository;
 import com.transport.ticketing.model.Cashier;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class CashierRepository extends InMemoryCrudRepository<Cashier> {
+    private static final String BY_DISTRIBUTOR = "distributorId";
+
+    public CashierRepository() {
+        registerIndex(BY_DISTRIBUTOR, Cashier::getDistributorId);
+    }
+
     public List<Cashier> findByDistributorId(String distributorId) {
-        return findAll().stream()
-                .filter(c -> c.getDistributorId().equals(distributorId))
-                .collect(Collectors.toList());
+        return findByIndex(BY_DISTRIBUTOR, distributorId);
     }
-}
+}
@@ -0,0 +1,18 @@
+package com.transport.ticketing.repository;
+
+import java.util.function.Supplier;
+
+/**
+ * Runs an action at a moment when no repository write is half applied: every save and delete
+ * has either finished (store, indexes and write listener) before the action starts, or starts
+ * after it returns. Writers wait for the action, so it should only mark a point, e.g. queue a
+ * journal rotation, not do the work that follows from it.
+ */
+public final class CommitBarrier {
+    private CommitBarrier() {
+    }
+
+    public static <R> R between(Supplier<R> action) {
+        return VersionClock.exclusive(action);
+    }
+}
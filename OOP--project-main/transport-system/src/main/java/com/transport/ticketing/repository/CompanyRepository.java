@@ -2,5 +2,16 @@ package com.transport.ticketing.repository;
 
 import com.transport.ticketing.model.Company;
 
+import java.util.Optional;
+
 public class CompanyRepository extends InMemoryCrudRepository<Company> {
-}
+    private static final String BY_OWNER = "ownerUserId";
+
+    public CompanyRepository() {
+        registerIndex(BY_OWNER, Company::getOwnerUserId);
+    }
+
+    public Optional<Company> findByOwnerUserId(String ownerUserId) {
+        return findFirstByIndex(BY_OWNER, ownerUserId);
+    }
+}
@@ -0,0 +1,213 @@
+package com.transport.ticketing.repository;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Concurrent map from non-zero long keys to values, using open addressing so a lookup neither
+ * boxes the key nor follows node pointers. The table is split into segments; a writer locks
+ * one segment, readers never lock. A key, once placed in a table, stays in its slot (removal
+ * leaves a tombstone value), and tables are only ever replaced wholesale by a resize, so a
+ * reader always probes a consistent table.
+ * <p>
+ * Like ConcurrentHashMap, iteration is weakly consistent and never throws
+ * ConcurrentModificationException.
+ */
+final class ConcurrentLongMap<V> {
+    private static final int SEGMENT_BITS = 4;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final Object TOMBSTONE = new Object();
+
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+    ConcurrentLongMap() {
+        Arrays.setAll(segments, i -> new Segment());
+    }
+
+    V get(long key) {
+        int hash = hash(key);
+        return cast(segmentFor(hash).get(key, hash));
+    }
+
+    V put(long key, V value) {
+        int hash = hash(key);
+        return cast(segmentFor(hash).update(key, hash, previous -> value, false, true));
+    }
+
+    V putIfAbsent(long key, V value) {
+        int hash = hash(key);
+        Object[] previous = new Object[1];
+        segmentFor(hash).update(key, hash, current -> {
+            previous[0] = current;
+            return current != null ? current : value;
+        }, false, false);
+        return cast(previous[0]);
+    }
+
+    V remove(long key) {
+        int hash = hash(key);
+        return cast(segmentFor(hash).update(key, hash, previous -> null, true, true));
+    }
+
+    /**
+     * Replaces the mapping with the function's result, or removes it when the result is null.
+     * The function runs under the segment lock, so calls for the same key are serialized; if it
+     * throws, the map is left unchanged.
+     */
+    V compute(long key, UnaryOperator<V> remapping) {
+        int hash = hash(key);
+        return cast(segmentFor(hash).update(key, hash, previous -> remapping.apply(cast(previous)), false, false));
+    }
+
+    /**
+     * As {@link #compute}, but only runs the function when the key is present.
+     */
+    V computeIfPresent(long key, UnaryOperator<V> remapping) {
+        int hash = hash(key);
+        return cast(segmentFor(hash).update(key, hash, previous -> remapping.apply(cast(previous)), true, false));
+    }
+
+    void forEach(Consumer<? super V> action) {
+        for (Segment segment : segments) {
+            Table table = segment.table;
+            for (int slot = 0; slot < table.values.length(); slot++) {
+                Object value = table.values.get(slot);
+                if (value != null && value != TOMBSTONE) {
+                    action.accept(cast(value));
+                }
+            }
+        }
+    }
+
+    Stream<V> values() {
+        return Arrays.stream(segments).flatMap(segment -> {
+            Table table = segment.table;
+            return IntStream.range(0, table.values.length())
+                    .mapToObj(table.values::get)
+                    .filter(value -> value != null && value != TOMBSTONE)
+                    .map(ConcurrentLongMap::cast);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V cast(Object value) {
+        return (V) value;
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[hash >>> (Integer.SIZE - SEGMENT_BITS)];
+    }
+
+    private static int hash(long key) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Key 0 is reserved");
+        }
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static final class Table {
+        final AtomicLongArray keys;
+        final AtomicReferenceArray<Object> values;
+
+        Table(int capacity) {
+            keys = new AtomicLongArray(capacity);
+            values = new AtomicReferenceArray<>(capacity);
+        }
+
+        /**
+         * Slot holding the key, or the empty slot where it would go.
+         */
+        int slot(long key, int hash) {
+            int mask = keys.length() - 1;
+            int slot = hash & mask;
+            while (true) {
+                long current = keys.get(slot);
+                if (current == key || current == 0) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+    }
+
+    private static final class Segment {
+        volatile Table table = new Table(INITIAL_CAPACITY);
+        // Guarded by this: slots with a key (live or tombstone) and slots with a live value.
+        private int used;
+        private int live;
+
+        Object get(long key, int hash) {
+            Table current = table;
+            int slot = current.slot(key, hash);
+            // A key may be visible before its value while a writer fills the slot.
+            Object value = current.keys.get(slot) == key ? current.values.get(slot) : null;
+            return value == TOMBSTONE ? null : value;
+        }
+
+        /**
+         * Applies the function to the current value (null when absent) and stores its result.
+         * Returns the previous value when returnPrevious is set, otherwise the new one.
+         */
+        synchronized Object update(long key, int hash, UnaryOperator<Object> function,
+                                   boolean onlyIfPresent, boolean returnPrevious) {
+            Object previous = get(key, hash);
+            if (previous == null && onlyIfPresent) {
+                return null;
+            }
+            Object next = function.apply(previous);
+            if (next == null) {
+                if (previous != null) {
+                    // The function may have resized the table, so locate the slot again.
+                    Table current = table;
+                    current.values.set(current.slot(key, hash), TOMBSTONE);
+                    live--;
+                }
+            } else {
+                Table current = table;
+                int slot = current.slot(key, hash);
+                if (current.keys.get(slot) != key) {
+                    if ((used + 1) * 4 > current.keys.length() * 3) {
+                        current = resize();
+                        slot = current.slot(key, hash);
+                    }
+                    current.keys.set(slot, key);
+                    used++;
+                }
+                current.values.set(slot, next);
+                if (previous == null) {
+                    live++;
+                }
+            }
+            return returnPrevious ? previous : next;
+        }
+
+        private Table resize() {
+            Table old = table;
+            int capacity = INITIAL_CAPACITY;
+            while ((live + 1) * 2 > capacity) {
+                capacity <<= 1;
+            }
+            Table grown = new Table(capacity);
+            int copied = 0;
+            for (int slot = 0; slot < old.keys.length(); slot++) {
+                Object value = old.values.get(slot);
+                if (value != null && value != TOMBSTONE) {
+                    long key = old.keys.get(slot);
+                    int target = grown.slot(key, hash(key));
+                    grown.keys.set(target, key);
+                    grown.values.set(target, value);
+                    copied++;
+                }
+            }
+            used = copied;
+            table = grown;
+            return grown;
+        }
+    }
+}
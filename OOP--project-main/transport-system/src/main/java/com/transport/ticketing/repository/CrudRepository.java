@@ -1,16 +1,105 @@
 package com.transport.ticketing.repository;
 
+import com.transport.ticketing.exception.OptimisticLockException;
 import com.transport.ticketing.model.BaseEntity;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public interface CrudRepository<T extends BaseEntity> {
+    int MAX_UPDATE_ATTEMPTS = 16;
+
     T save(T entity);
 
+    /**
+     * Saves only if the stored version still equals expectedVersion (0 when the entity must not
+     * exist yet), otherwise throws OptimisticLockException and changes nothing.
+     */
+    T save(T entity, long expectedVersion);
+
+    /**
+     * Saves each entity as {@link #save(BaseEntity)} would. Stores may wait for durability once
+     * for the whole batch rather than per entity.
+     */
+    default List<T> saveAll(Collection<? extends T> entities) {
+        List<T> saved = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            saved.add(save(entity));
+        }
+        return saved;
+    }
+
+    /**
+     * Lock-free read-modify-write: applies the change to a copy of the current entity and saves
+     * it against the version it was read at, re-reading and retrying when another writer got
+     * there first. Exceptions thrown by the change abort without saving. Empty if there is no
+     * entity with that id.
+     */
+    default Optional<T> update(String id, Consumer<? super T> change) {
+        for (int attempt = 1; ; attempt++) {
+            Optional<T> current = findById(id);
+            if (current.isEmpty()) {
+                return Optional.empty();
+            }
+            T draft = current.get().copy();
+            long expectedVersion = draft.getVersion();
+            change.accept(draft);
+            try {
+                return Optional.of(save(draft, expectedVersion));
+            } catch (OptimisticLockException ex) {
+                if (attempt == MAX_UPDATE_ATTEMPTS) {
+                    throw ex;
+                }
+                Thread.onSpinWait();
+            }
+        }
+    }
+
     Optional<T> findById(String id);
 
+    /**
+     * Looks up by the numeric id (see {@link com.transport.ticketing.util.EntityId}), for
+     * callers that already hold one and need not format it.
+     */
+    Optional<T> findById(long key);
+
+    /**
+     * The entity as it was when the snapshot was opened, ignoring later saves and deletes.
+     */
+    Optional<T> findById(String id, ReadSnapshot snapshot);
+
     List<T> findAll();
 
+    List<T> findAll(ReadSnapshot snapshot);
+
+    /**
+     * Weakly consistent view over the stored entities; nothing is copied.
+     */
+    Stream<T> stream();
+
+    void forEach(Consumer<? super T> action);
+
+    /**
+     * Returns up to pageSize entities ordered by id, starting after the entity identified by
+     * continuationToken (null for the first page).
+     */
+    Page<T> findPage(String continuationToken, int pageSize);
+
     void deleteById(String id);
-}
+
+    void deleteById(long key);
+
+    /**
+     * Deletes each entity as {@link #deleteById(long)} would. Stores may wait for durability
+     * once for the whole batch rather than per entity.
+     */
+    default void deleteAllById(Collection<Long> keys) {
+        for (long key : keys) {
+            deleteById(key);
+        }
+    }
+}
@@ -3,12 +3,22 @@ package com.transport.ticketing.repository;
 import com.transport.ticketing.model.Distributor;
 
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Optional;
 
 public class DistributorRepository extends InMemoryCrudRepository<Distributor> {
+    private static final String BY_COMPANY = "companyId";
+    private static final String BY_OWNER = "ownerUserId";
+
+    public DistributorRepository() {
+        registerIndex(BY_COMPANY, Distributor::getCompanyId);
+        registerIndex(BY_OWNER, Distributor::getOwnerUserId);
+    }
+
     public List<Distributor> findByCompanyId(String companyId) {
-        return findAll().stream()
-                .filter(d -> d.getCompanyId().equals(companyId))
-                .collect(Collectors.toList());
+        return findByIndex(BY_COMPANY, companyId);
+    }
+
+    public Optional<Distributor> findByOwnerUserId(String ownerUserId) {
+        return findFirstByIndex(BY_OWNER, ownerUserId);
     }
-}
+}
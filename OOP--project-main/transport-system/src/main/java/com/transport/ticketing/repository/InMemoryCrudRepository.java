@@ -1,34 +1,626 @@
 package com.transport.ticketing.repository;
 
+import com.transport.ticketing.exception.DuplicateKeyException;
+import com.transport.ticketing.exception.OptimisticLockException;
 import com.transport.ticketing.model.BaseEntity;
+import com.transport.ticketing.util.EntityId;
+import com.transport.ticketing.util.ErrorReporter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
+/**
+ * Thread-safe repository kept in memory. {@code store} holds the current entities; while a
+ * {@link ReadSnapshot} is open, every write also records the entity's versions in
+ * {@code history} (newest first, stamped with their commit timestamp) so the snapshot can
+ * still see the state it was opened at. Chains are cut back as snapshots close and dropped
+ * once none is open, so outside of reports a write only adds the shared side of one commit
+ * lock stripe, picked by its key (see {@link VersionClock}).
+ */
 public class InMemoryCrudRepository<T extends BaseEntity> implements CrudRepository<T> {
-    private final Map<String, T> store = new ConcurrentHashMap<>();
+    private static final String BY_ID = "id";
+
+    private final ConcurrentLongMap<T> store = new ConcurrentLongMap<>();
+    private final ConcurrentLongMap<Version<T>> history = new ConcurrentLongMap<>();
+    private final Map<String, SecondaryIndex<T>> indexes = new ConcurrentHashMap<>();
+    private final Map<String, UniqueIndex<T>> uniqueIndexes = new ConcurrentHashMap<>();
+    private final Map<String, SortedIndex<T, ?>> sortedIndexes = new ConcurrentHashMap<>();
+    private final SortedIndex<T, Long> idOrder = new SortedIndex<>(BaseEntity::getKey);
+    private volatile WriteListener writeListener;
+    private volatile String name;
+
+    public InMemoryCrudRepository() {
+        sortedIndexes.put(BY_ID, idOrder);
+        VersionClock.register(this);
+    }
+
+    /**
+     * Attaches a listener (e.g. a journal) that sees every later save and delete, or detaches
+     * it when null.
+     */
+    public void setWriteListener(String repositoryName, WriteListener writeListener) {
+        this.name = repositoryName;
+        this.writeListener = writeListener;
+    }
 
     @Override
     public T save(T entity) {
-        store.put(entity.getId(), entity);
+        return save(entity, 0, false);
+    }
+
+    @Override
+    public T save(T entity, long expectedVersion) {
+        return save(entity, expectedVersion, true);
+    }
+
+    /**
+     * Applies every save before waiting for any to become durable, so a journal commits the
+     * batch together instead of once per entity.
+     */
+    @Override
+    public List<T> saveAll(Collection<? extends T> entities) {
+        List<Change<T>> durable = new ArrayList<>(entities.size());
+        List<T> saved = new ArrayList<>(entities.size());
+        try {
+            for (T entity : entities) {
+                saved.add(write(entity, 0, false, durable));
+            }
+        } finally {
+            // Entities saved before a failure stay saved, so they must still become durable.
+            awaitDurable(durable);
+        }
+        return saved;
+    }
+
+    /**
+     * Saves as {@link #save(BaseEntity)} does, but returns once the store has changed instead of
+     * waiting for the write listener, so a caller that must not block (e.g. a partition writer)
+     * can hand the wait to another thread. Errors of the save itself are thrown right away. The
+     * future completes when the save is durable; if it cannot be made durable, the save is
+     * undone first, on the thread completing the listener's write, and the future fails with
+     * UncheckedIOException.
+     */
+    public CompletableFuture<T> saveDeferred(T entity) {
+        List<Change<T>> durable = new ArrayList<>(1);
+        write(entity, 0, false, durable);
+        if (durable.isEmpty()) {
+            return CompletableFuture.completedFuture(entity);
+        }
+        return whenDurable(durable.get(0), entity);
+    }
+
+    private T save(T entity, long expectedVersion, boolean checkVersion) {
+        List<Change<T>> durable = new ArrayList<>(1);
+        write(entity, expectedVersion, checkVersion, durable);
+        awaitDurable(durable);
+        return entity;
+    }
+
+    private T write(T entity, long expectedVersion, boolean checkVersion, List<Change<T>> durable) {
+        Lock commit = VersionClock.commitLock(entity.getKey());
+        commit.lock();
+        try {
+            // compute() serializes writers per id, so index maintenance for one entity never interleaves.
+            store.compute(entity.getKey(), previous -> {
+                long storedVersion = previous == null ? 0 : previous.getVersion();
+                if (checkVersion && storedVersion != expectedVersion) {
+                    throw new OptimisticLockException("Concurrent modification of " + entity.getId()
+                            + " (expected version " + expectedVersion + ", found " + storedVersion + ")");
+                }
+                List<Map.Entry<UniqueIndex<T>, Object>> claimed = claimUniqueKeys(entity);
+                long unsavedVersion = entity.getVersion();
+                entity.setVersion(storedVersion + 1);
+                // Encoding the record is the last step that can fail, so it runs before
+                // anything else changes; after it the write always completes.
+                CompletableFuture<Void> journaled = null;
+                WriteListener listener = writeListener;
+                if (listener != null) {
+                    try {
+                        journaled = listener.saved(name, entity);
+                    } catch (RuntimeException ex) {
+                        entity.setVersion(unsavedVersion);
+                        releaseUniqueKeys(entity, claimed);
+                        throw ex;
+                    }
+                }
+                recordVersion(entity.getKey(), previous, entity);
+                if (previous != null && previous != entity) {
+                    indexes.values().forEach(index -> index.remove(previous));
+                    uniqueIndexes.values().forEach(index -> index.remove(previous));
+                    sortedIndexes.values().forEach(index -> index.remove(previous));
+                }
+                indexes.values().forEach(index -> index.update(entity));
+                uniqueIndexes.values().forEach(index -> index.update(entity));
+                sortedIndexes.values().forEach(index -> index.update(entity));
+                afterSave(entity);
+                if (journaled != null) {
+                    durable.add(new Change<>(entity.getKey(), previous, entity, journaled));
+                }
+                return entity;
+            });
+        } finally {
+            commit.unlock();
+        }
         return entity;
     }
 
     @Override
     public Optional<T> findById(String id) {
-        return Optional.ofNullable(store.get(id));
+        long key = EntityId.parse(id);
+        return key == 0 ? Optional.empty() : findById(key);
+    }
+
+    @Override
+    public Optional<T> findById(long key) {
+        return Optional.ofNullable(store.get(key));
+    }
+
+    @Override
+    public Optional<T> findById(String id, ReadSnapshot snapshot) {
+        long key = EntityId.parse(id);
+        return key == 0 ? Optional.empty() : Optional.ofNullable(resolve(key, snapshot.getTimestamp()));
     }
 
     @Override
     public List<T> findAll() {
-        return new ArrayList<>(store.values());
+        return store.values().toList();
+    }
+
+    @Override
+    public List<T> findAll(ReadSnapshot snapshot) {
+        return visibleAt(store.values().toList(), snapshot, entity -> true);
+    }
+
+    @Override
+    public Stream<T> stream() {
+        return store.values();
+    }
+
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        store.values().forEach(action);
+    }
+
+    @Override
+    public Page<T> findPage(String continuationToken, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        Long after = null;
+        if (continuationToken != null) {
+            after = EntityId.parse(continuationToken);
+            if (after == 0) {
+                throw new IllegalArgumentException("Invalid continuation token: " + continuationToken);
+            }
+        }
+        List<T> items = idOrder.after(after, pageSize + 1);
+        if (items.size() <= pageSize) {
+            return new Page<>(items, null);
+        }
+        List<T> page = items.subList(0, pageSize);
+        return new Page<>(page, page.get(pageSize - 1).getId());
     }
 
     @Override
     public void deleteById(String id) {
-        store.remove(id);
+        long key = EntityId.parse(id);
+        if (key != 0) {
+            deleteById(key);
+        }
+    }
+
+    @Override
+    public void deleteById(long key) {
+        List<Change<T>> durable = new ArrayList<>(1);
+        delete(key, durable);
+        awaitDurable(durable);
+    }
+
+    /**
+     * Applies every delete before waiting for any to become durable, as {@link #saveAll} does.
+     */
+    @Override
+    public void deleteAllById(Collection<Long> keys) {
+        List<Change<T>> durable = new ArrayList<>(keys.size());
+        try {
+            for (long key : keys) {
+                delete(key, durable);
+            }
+        } finally {
+            awaitDurable(durable);
+        }
+    }
+
+    /**
+     * Deletes as {@link #deleteById(long)} does, but returns once the store has changed; the
+     * future completes as the one of {@link #saveDeferred} does, and a delete that cannot be
+     * made durable is undone.
+     */
+    public CompletableFuture<Void> deleteDeferred(long key) {
+        List<Change<T>> durable = new ArrayList<>(1);
+        delete(key, durable);
+        if (durable.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return whenDurable(durable.get(0), null);
+    }
+
+    /**
+     * Completes with the result once the change is durable, or undoes the change first and
+     * fails with UncheckedIOException if it cannot be made durable.
+     */
+    private <R> CompletableFuture<R> whenDurable(Change<T> change, R result) {
+        return change.durable().handle((done, error) -> {
+            if (error == null) {
+                return result;
+            }
+            revert(change);
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            throw new CompletionException(cause instanceof IOException io ? new UncheckedIOException(io) : cause);
+        });
+    }
+
+    private void delete(long key, List<Change<T>> durable) {
+        Lock commit = VersionClock.commitLock(key);
+        commit.lock();
+        try {
+            store.computeIfPresent(key, previous -> {
+                WriteListener listener = writeListener;
+                if (listener != null) {
+                    durable.add(new Change<>(key, previous, null, listener.deleted(name, previous.getId())));
+                }
+                recordVersion(key, previous, null);
+                indexes.values().forEach(index -> index.remove(previous));
+                uniqueIndexes.values().forEach(index -> index.remove(previous));
+                sortedIndexes.values().forEach(index -> index.remove(previous));
+                afterDelete(previous);
+                return null;
+            });
+        } finally {
+            commit.unlock();
+        }
+    }
+
+    /**
+     * Registers a secondary index maintained on every save/delete. Subclasses call this from
+     * their constructor; entities whose key is null are left out of the index.
+     */
+    protected void registerIndex(String name, Function<? super T, ?> keyExtractor) {
+        SecondaryIndex<T> index = new SecondaryIndex<>(keyExtractor);
+        store.values().forEach(index::update);
+        if (indexes.putIfAbsent(name, index) != null) {
+            throw new IllegalStateException("Index already registered: " + name);
+        }
+    }
+
+    /**
+     * Registers an index whose keys must be unique across the repository. A save that would
+     * reuse another entity's key fails with DuplicateKeyException and leaves the store unchanged.
+     */
+    protected void registerUniqueIndex(String name, Function<? super T, ?> keyExtractor) {
+        UniqueIndex<T> index = new UniqueIndex<>(name, keyExtractor);
+        store.values().forEach(entity -> {
+            index.claim(entity);
+            index.update(entity);
+        });
+        if (uniqueIndexes.putIfAbsent(name, index) != null) {
+            throw new IllegalStateException("Index already registered: " + name);
+        }
+    }
+
+    /**
+     * Registers an ordered index for range lookups. Entities whose key is null are left out.
+     */
+    protected <K extends Comparable<? super K>> void registerSortedIndex(String name,
+                                                                        Function<? super T, ? extends K> keyExtractor) {
+        SortedIndex<T, K> index = new SortedIndex<>(keyExtractor);
+        store.values().forEach(index::update);
+        if (sortedIndexes.putIfAbsent(name, index) != null) {
+            throw new IllegalStateException("Index already registered: " + name);
+        }
+    }
+
+    /**
+     * Called while the entity's id is still locked by save, after the indexes were updated.
+     */
+    protected void afterSave(T entity) {
+    }
+
+    /**
+     * Called while the entity's id is still locked by deleteById, after the indexes were updated.
+     */
+    protected void afterDelete(T entity) {
+    }
+
+    protected List<T> findByIndex(String name, Object key) {
+        return new ArrayList<>(index(name).get(key));
+    }
+
+    protected Collection<T> viewByIndex(String name, Object key) {
+        return index(name).view(key);
+    }
+
+    protected Optional<T> findFirstByIndex(String name, Object key) {
+        return index(name).get(key).stream().findFirst();
+    }
+
+    protected Optional<T> findByUniqueIndex(String name, Object key) {
+        UniqueIndex<T> index = uniqueIndexes.get(name);
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown index: " + name);
+        }
+        return index.get(key);
+    }
+
+    /**
+     * As {@link #findByIndex(String, Object)}, but as of the snapshot.
+     */
+    protected List<T> findByIndex(String name, Object key, ReadSnapshot snapshot) {
+        SecondaryIndex<T> index = index(name);
+        return visibleAt(index.get(key), snapshot, entity -> Objects.equals(index.keyOf(entity), key));
+    }
+
+    /**
+     * Entities whose sorted-index key lies in [from, to], in key order. A null bound is open.
+     */
+    protected <K extends Comparable<? super K>> List<T> findRangeByIndex(String name, K from, K to) {
+        return this.<K>sortedIndex(name).range(from, to);
+    }
+
+    /**
+     * As {@link #findRangeByIndex(String, Comparable, Comparable)}, but as of the snapshot.
+     */
+    protected <K extends Comparable<? super K>> List<T> findRangeByIndex(String name, K from, K to,
+                                                                         ReadSnapshot snapshot) {
+        SortedIndex<T, K> index = sortedIndex(name);
+        List<T> visible = visibleAt(index.range(from, to), snapshot, entity -> index.inRange(entity, from, to));
+        visible.sort(index.order());
+        return visible;
+    }
+
+    /**
+     * Cuts every version chain back to what the open snapshots can still see, dropping them all
+     * once none is open. Runs under a commit lock stripe so no snapshot opens half way through.
+     */
+    void pruneVersions() {
+        Lock commit = VersionClock.commitLock(0);
+        commit.lock();
+        try {
+            long oldest = VersionClock.oldestReader();
+            List<Long> keys = new ArrayList<>();
+            history.forEach(chain -> keys.add(chain.key));
+            for (long key : keys) {
+                history.computeIfPresent(key, chain -> chain.prune(oldest));
+            }
+        } finally {
+            commit.unlock();
+        }
+    }
+
+    /**
+     * Records a committed change while snapshots are open. Called under the commit lock and the
+     * entity's store lock, before the indexes and the store change, so a reader that finds the
+     * entity moved or missing there already finds its chain.
+     */
+    private void recordVersion(long key, T previous, T current) {
+        long oldest = VersionClock.oldestReader();
+        if (oldest == VersionClock.NO_READERS) {
+            if (history.get(key) != null) {
+                history.remove(key);
+            }
+            return;
+        }
+        long timestamp = VersionClock.nextCommit();
+        history.compute(key, chain -> {
+            // Without a chain the previous value predates every open snapshot.
+            Version<T> older = chain != null ? chain : new Version<>(key, previous, 0, null);
+            return new Version<>(key, current, timestamp, older).prune(oldest);
+        });
+    }
+
+    /**
+     * The entity as of the timestamp, or null if it did not exist then. The store is read
+     * before the chain; writers update them in the opposite order.
+     */
+    private T resolve(long key, long timestamp) {
+        T current = store.get(key);
+        Version<T> chain = history.get(key);
+        return chain == null ? current : chain.visibleAt(timestamp);
+    }
+
+    /**
+     * Resolves the candidates (read from the current store or indexes) at the snapshot, plus
+     * every entity with recorded versions, since it may have matched when the snapshot was taken.
+     */
+    private List<T> visibleAt(Collection<T> candidates, ReadSnapshot snapshot, Predicate<? super T> filter) {
+        long timestamp = snapshot.getTimestamp();
+        Map<Long, T> visible = new LinkedHashMap<>();
+        for (T candidate : candidates) {
+            long key = candidate.getKey();
+            if (!visible.containsKey(key)) {
+                T entity = resolve(key, timestamp);
+                if (entity != null && filter.test(entity)) {
+                    visible.put(key, entity);
+                }
+            }
+        }
+        history.forEach(chain -> {
+            if (!visible.containsKey(chain.key)) {
+                T entity = chain.visibleAt(timestamp);
+                if (entity != null && filter.test(entity)) {
+                    visible.put(chain.key, entity);
+                }
+            }
+        });
+        return new ArrayList<>(visible.values());
+    }
+
+    /**
+     * Waits for the changes to reach the listener's durable copy. A change that does not is
+     * undone in the store, and the first such failure is rethrown once all were waited for.
+     */
+    private void awaitDurable(List<Change<T>> changes) {
+        RuntimeException failure = null;
+        for (Change<T> change : changes) {
+            try {
+                change.durable().join();
+            } catch (CompletionException ex) {
+                revert(change);
+                if (failure == null) {
+                    failure = ex.getCause() instanceof IOException io ? new UncheckedIOException(io) : ex;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Puts back the entity a change replaced (or removes the one it added), unless a later
+     * write replaced it in turn. An entity that was changed in place and saved as the very
+     * instance already stored has no older state to return to, so it keeps the change.
+     */
+    private void revert(Change<T> change) {
+        if (change.previous() == change.current()) {
+            return;
+        }
+        long key = change.key();
+        Lock commit = VersionClock.commitLock(key);
+        commit.lock();
+        try {
+            store.compute(key, current -> {
+                if (current != change.current()) {
+                    return current;
+                }
+                T restored = change.previous();
+                if (restored != null) {
+                    claimUniqueKeys(restored);
+                }
+                recordVersion(key, current, restored);
+                if (current != null) {
+                    indexes.values().forEach(index -> index.remove(current));
+                    uniqueIndexes.values().forEach(index -> index.remove(current));
+                    sortedIndexes.values().forEach(index -> index.remove(current));
+                }
+                if (restored != null) {
+                    indexes.values().forEach(index -> index.update(restored));
+                    uniqueIndexes.values().forEach(index -> index.update(restored));
+                    sortedIndexes.values().forEach(index -> index.update(restored));
+                    afterSave(restored);
+                } else {
+                    afterDelete(current);
+                }
+                return restored;
+            });
+        } catch (DuplicateKeyException ex) {
+            // Another entity took a unique key the change gave up; the change has to stay.
+            ErrorReporter.report("Could not undo the failed write of " + EntityId.format(key), ex);
+        } finally {
+            commit.unlock();
+        }
+    }
+
+    /**
+     * Claims every unique key of the entity, all or none. Returns the keys newly claimed, for
+     * {@link #releaseUniqueKeys} if the write is given up afterwards.
+     */
+    private List<Map.Entry<UniqueIndex<T>, Object>> claimUniqueKeys(T entity) {
+        List<Map.Entry<UniqueIndex<T>, Object>> claimed = new ArrayList<>();
+        try {
+            for (UniqueIndex<T> index : uniqueIndexes.values()) {
+                Object key = index.claim(entity);
+                if (key != null) {
+                    claimed.add(Map.entry(index, key));
+                }
+            }
+        } catch (RuntimeException ex) {
+            releaseUniqueKeys(entity, claimed);
+            throw ex;
+        }
+        return claimed;
+    }
+
+    private void releaseUniqueKeys(T entity, List<Map.Entry<UniqueIndex<T>, Object>> claimed) {
+        claimed.forEach(entry -> entry.getKey().rollback(entity, entry.getValue()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K extends Comparable<? super K>> SortedIndex<T, K> sortedIndex(String name) {
+        SortedIndex<T, K> index = (SortedIndex<T, K>) sortedIndexes.get(name);
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown index: " + name);
+        }
+        return index;
+    }
+
+    private SecondaryIndex<T> index(String name) {
+        SecondaryIndex<T> index = indexes.get(name);
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown index: " + name);
+        }
+        return index;
+    }
+
+    /**
+     * A change applied to the store and the listener's pending record of it. previous and
+     * current are null for an insert and a delete respectively.
+     */
+    private record Change<T>(long key, T previous, T current, CompletableFuture<Void> durable) {
+    }
+
+    /**
+     * One committed state of an entity (null once deleted), linked to the state it replaced.
+     */
+    private static final class Version<T> {
+        final long key;
+        final T value;
+        final long timestamp;
+        volatile Version<T> older;
+
+        Version(long key, T value, long timestamp, Version<T> older) {
+            this.key = key;
+            this.value = value;
+            this.timestamp = timestamp;
+            this.older = older;
+        }
+
+        T visibleAt(long snapshot) {
+            for (Version<T> version = this; version != null; version = version.older) {
+                if (version.timestamp <= snapshot) {
+                    return version.value;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Drops the versions no snapshot at or after oldest can see. Returns null when only the
+         * current value is left, which the store already holds.
+         */
+        Version<T> prune(long oldest) {
+            for (Version<T> version = this; version != null; version = version.older) {
+                if (version.timestamp <= oldest) {
+                    version.older = null;
+                    return version == this ? null : this;
+                }
+            }
+            return this;
+        }
     }
 }
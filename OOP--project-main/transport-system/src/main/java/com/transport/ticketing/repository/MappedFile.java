@@ -0,0 +1,136 @@
+package com.transport.ticketing.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A file mapped into memory in fixed-size chunks, so it can grow without remapping what is
+ * already mapped. Values are addressed by absolute file position; callers lay out their data
+ * so that no value crosses a chunk boundary.
+ * <p>
+ * The file remembers which pages were written since the last {@link #force}, so a force only
+ * writes back those and costs the same however large the file has grown. Callers must not
+ * write while a force runs.
+ */
+final class MappedFile implements Closeable {
+    private static final int PAGE = 4096;
+
+    private final FileChannel channel;
+    private final int chunkSize;
+    private volatile MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+    // Pages written since the last force.
+    private final BitSet dirtyPages = new BitSet();
+
+    MappedFile(Path file, int chunkSize) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.chunkSize = chunkSize;
+    }
+
+    int chunkSize() {
+        return chunkSize;
+    }
+
+    byte get(long position) {
+        return chunk(position).get(offset(position));
+    }
+
+    void put(long position, byte value) {
+        chunk(position).put(offset(position), value);
+        touched(position, Byte.BYTES);
+    }
+
+    int getInt(long position) {
+        return chunk(position).getInt(offset(position));
+    }
+
+    void putInt(long position, int value) {
+        chunk(position).putInt(offset(position), value);
+        touched(position, Integer.BYTES);
+    }
+
+    long getLong(long position) {
+        return chunk(position).getLong(offset(position));
+    }
+
+    void putLong(long position, long value) {
+        chunk(position).putLong(offset(position), value);
+        touched(position, Long.BYTES);
+    }
+
+    void get(long position, byte[] target) {
+        chunk(position).get(offset(position), target);
+    }
+
+    void put(long position, byte[] source) {
+        chunk(position).put(offset(position), source);
+        touched(position, source.length);
+    }
+
+    /**
+     * Writes the pages changed since the last force back to the file. Mapped writes already
+     * survive a crash of the process; this is only needed to survive a crash of the machine.
+     * If it fails, the range stays dirty for the next force.
+     */
+    synchronized void force() {
+        MappedByteBuffer[] current = chunks;
+        int pagesPerChunk = chunkSize / PAGE;
+        for (int page = dirtyPages.nextSetBit(0); page >= 0; ) {
+            // One force per run of dirty pages, cut at chunk ends.
+            int chunkEnd = (page / pagesPerChunk + 1) * pagesPerChunk;
+            int end = Math.min(dirtyPages.nextClearBit(page), chunkEnd);
+            current[page / pagesPerChunk].force((page % pagesPerChunk) * PAGE, (end - page) * PAGE);
+            dirtyPages.clear(page, end);
+            page = dirtyPages.nextSetBit(end);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        // The mappings themselves are released by the garbage collector.
+        channel.close();
+    }
+
+    private void touched(long position, int length) {
+        dirtyPages.set((int) (position / PAGE), (int) ((position + length - 1) / PAGE) + 1);
+    }
+
+    private int offset(long position) {
+        return (int) (position % chunkSize);
+    }
+
+    private MappedByteBuffer chunk(long position) {
+        int index = (int) (position / chunkSize);
+        MappedByteBuffer[] current = chunks;
+        if (index < current.length) {
+            return current[index];
+        }
+        return map(index);
+    }
+
+    private synchronized MappedByteBuffer map(int index) {
+        MappedByteBuffer[] current = chunks;
+        if (index < current.length) {
+            return current[index];
+        }
+        MappedByteBuffer[] grown = Arrays.copyOf(current, index + 1);
+        try {
+            for (int i = current.length; i <= index; i++) {
+                // Mapping past the end extends the file.
+                grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i * chunkSize, chunkSize);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        chunks = grown;
+        return grown[index];
+    }
+}
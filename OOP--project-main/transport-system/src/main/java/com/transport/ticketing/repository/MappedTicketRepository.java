@@ -0,0 +1,772 @@
+package com.transport.ticketing.repository;
+
+import com.transport.ticketing.exception.OptimisticLockException;
+import com.transport.ticketing.model.Ticket;
+import com.transport.ticketing.model.TicketStatus;
+import com.transport.ticketing.util.EntityId;
+import com.transport.ticketing.util.IdGenerator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Ticket repository that keeps tickets off the heap: every ticket is a fixed 64-byte record in
+ * a memory-mapped file, addressed by ordinal, and its strings live in a {@link StringArea}
+ * where trip, cashier and buyer values are interned. The heap only holds int tables (id to
+ * ordinal, trip to ordinals, free ordinals) and the seat and purchase counters.
+ * <p>
+ * Reads decode a fresh {@link Ticket} each time, so changing a returned ticket has no effect
+ * until it is saved. The files are the store itself; the repository is not registered with a
+ * journal. Instead a save or delete returns once its record is forced to disk, and writers that
+ * arrive while a force is running share the next one, as with the journal's group commit.
+ * <p>
+ * A record is never rewritten while it holds a ticket that may already be on disk: an update
+ * writes a fresh record and the old one is freed only once the new one has been forced. Each
+ * record carries a checksum over its fields and the strings it refers to, so on startup a
+ * record torn by a crash is dropped, and of two records with the same id the one with the
+ * higher version wins. No older versions are kept, so reads through a {@link ReadSnapshot}
+ * see the latest state.
+ */
+public class MappedTicketRepository extends TicketRepository implements Closeable {
+    private static final int MAGIC = 0x544B5453;
+    private static final int HEADER = 64;
+    private static final int COUNT_OFFSET = 8;
+    private static final int RECORD = 64;
+    private static final int CHUNK_SIZE = RECORD << 18;
+    private static final long NO_INSTANT = Long.MIN_VALUE;
+
+    // Record layout. The status byte is written last, and 0 marks a free record.
+    private static final int STATUS = 0;
+    private static final int SEAT = 4;
+    private static final int ID = 8;
+    private static final int TRIP = 12;
+    private static final int CASHIER = 16;
+    private static final int BUYER = 20;
+    private static final int CONTACT = 24;
+    private static final int CREATED_NANOS = 28;
+    private static final int CREATED_SECONDS = 32;
+    private static final int SOLD_SECONDS = 40;
+    private static final int SOLD_NANOS = 48;
+    private static final int CHECKSUM = 52;
+    private static final int VERSION = 56;
+    private static final int[] STRING_FIELDS = {ID, TRIP, CASHIER, BUYER, CONTACT};
+
+    private static final TicketStatus[] STATUSES = TicketStatus.values();
+
+    private final MappedFile records;
+    private final StringArea strings;
+    private final StampedLock lock = new StampedLock();
+    private final Map<String, IntList> byTrip = new HashMap<>();
+    private final IntList free = new IntList();
+    // Records replaced by an update, in write order, freed once that write is on disk; until
+    // then they still hold a valid older copy and are skipped by reads.
+    private final ArrayDeque<Replaced> replaced = new ArrayDeque<>();
+    private final BitSet replacedOrdinals = new BitSet();
+    private int[] idSlots = new int[1024];
+    private long[] idKeys = new long[1024];
+    private int idUsed;
+    private volatile int count;
+    // Number of records written, bumped under the write lock once a record is complete.
+    private volatile long writes;
+    private final Object flushes = new Object();
+    private long flushedWrites;
+    private boolean flushing;
+    // Waits for forces on behalf of deferred saves. One thread is enough, since every force
+    // covers all writes made before it started.
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "mapped-tickets-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Opens (or creates) the store in the given directory and rebuilds the in-memory tables
+     * from the records it already holds.
+     */
+    public MappedTicketRepository(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.records = new MappedFile(directory.resolve("tickets.dat"), CHUNK_SIZE);
+        this.strings = new StringArea(directory.resolve("ticket-strings.dat"));
+        if (records.getInt(0) != MAGIC) {
+            records.putInt(0, MAGIC);
+            records.putInt(COUNT_OFFSET, 0);
+        }
+        count = records.getInt(COUNT_OFFSET);
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            Ticket ticket = readIntact(ordinal);
+            if (ticket == null) {
+                release(ordinal);
+                continue;
+            }
+            int other = lookup(ticket.getKey());
+            if (other >= 0) {
+                // A crash came between an update and freeing the record it replaced.
+                Ticket older = read(other);
+                if (older.getVersion() >= ticket.getVersion()) {
+                    release(ordinal);
+                    continue;
+                }
+                forget(older, other);
+                release(other);
+                if (older.getStatus() != TicketStatus.CANCELLED) {
+                    accountReleased(older);
+                }
+            }
+            remember(ticket, ordinal);
+            if (ticket.getStatus() != TicketStatus.CANCELLED) {
+                accountSold(ticket);
+            }
+            IdGenerator.observe(ticket.getId());
+        }
+        flush();
+    }
+
+    @Override
+    public Ticket save(Ticket ticket) {
+        awaitFlushed(write(ticket, false, 0, false));
+        return ticket;
+    }
+
+    @Override
+    public Ticket save(Ticket ticket, long expectedVersion) {
+        awaitFlushed(write(ticket, false, expectedVersion, true));
+        return ticket;
+    }
+
+    /**
+     * Writes every ticket, then forces them to disk together.
+     */
+    @Override
+    public List<Ticket> saveAll(Collection<? extends Ticket> tickets) {
+        List<Ticket> saved = new ArrayList<>(tickets.size());
+        long written = 0;
+        try {
+            for (Ticket ticket : tickets) {
+                written = write(ticket, false, 0, false);
+                saved.add(ticket);
+            }
+        } finally {
+            awaitFlushed(written);
+        }
+        return saved;
+    }
+
+    @Override
+    public CompletableFuture<Ticket> saveDeferred(Ticket ticket) {
+        return flushed(write(ticket, false, 0, false), ticket);
+    }
+
+    @Override
+    public Ticket saveReserved(Ticket ticket) {
+        awaitFlushed(writeReserved(ticket));
+        return ticket;
+    }
+
+    @Override
+    public CompletableFuture<Ticket> saveReservedDeferred(Ticket ticket) {
+        return flushed(writeReserved(ticket), ticket);
+    }
+
+    @Override
+    public Optional<Ticket> findById(String id) {
+        long key = EntityId.parse(id);
+        return key == 0 ? Optional.empty() : findById(key);
+    }
+
+    @Override
+    public Optional<Ticket> findById(long key) {
+        long stamp = lock.readLock();
+        try {
+            int ordinal = lookup(key);
+            return ordinal < 0 ? Optional.empty() : Optional.ofNullable(read(ordinal));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Optional<Ticket> findById(String id, ReadSnapshot snapshot) {
+        return findById(id);
+    }
+
+    @Override
+    public List<Ticket> findAll() {
+        return stream().toList();
+    }
+
+    @Override
+    public List<Ticket> findAll(ReadSnapshot snapshot) {
+        return findAll();
+    }
+
+    /**
+     * Weakly consistent, like the in-memory stores: each record is read under its own short
+     * lock, so the action may save or delete tickets.
+     */
+    @Override
+    public Stream<Ticket> stream() {
+        return IntStream.range(0, count).mapToObj(this::readLocked).filter(Objects::nonNull);
+    }
+
+    @Override
+    public void forEach(Consumer<? super Ticket> action) {
+        stream().forEach(action);
+    }
+
+    /**
+     * Pages follow record order rather than id order; the token is the ordinal of the last
+     * ticket returned.
+     */
+    @Override
+    public Page<Ticket> findPage(String continuationToken, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        int ordinal = continuationToken == null ? 0 : Integer.parseInt(continuationToken) + 1;
+        List<Ticket> items = new ArrayList<>(pageSize);
+        int last = -1;
+        for (int limit = count; ordinal < limit; ordinal++) {
+            Ticket ticket = readLocked(ordinal);
+            if (ticket == null) {
+                continue;
+            }
+            if (items.size() == pageSize) {
+                return new Page<>(items, Integer.toString(last));
+            }
+            items.add(ticket);
+            last = ordinal;
+        }
+        return new Page<>(items, null);
+    }
+
+    @Override
+    public void deleteById(String id) {
+        long key = EntityId.parse(id);
+        if (key != 0) {
+            deleteById(key);
+        }
+    }
+
+    @Override
+    public void deleteById(long key) {
+        awaitFlushed(delete(key));
+    }
+
+    @Override
+    public void deleteAllById(Collection<Long> keys) {
+        long written = 0;
+        try {
+            for (long key : keys) {
+                written = Math.max(written, delete(key));
+            }
+        } finally {
+            awaitFlushed(written);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteDeferred(long key) {
+        return flushed(delete(key), null);
+    }
+
+    /**
+     * Removes the record and returns its write number for {@link #awaitFlushed}, or 0 if there
+     * was no ticket with that id.
+     */
+    private long delete(long key) {
+        long written;
+        long stamp = lock.writeLock();
+        try {
+            int ordinal = lookup(key);
+            if (ordinal < 0) {
+                return 0;
+            }
+            Ticket previous = read(ordinal);
+            forget(previous, ordinal);
+            release(ordinal);
+            if (previous.getStatus() != TicketStatus.CANCELLED) {
+                accountReleased(previous);
+            }
+            // An older copy still waiting to be freed must not come back after a crash.
+            for (Replaced old : replaced) {
+                if (EntityId.parse(strings.get(records.getInt(position(old.ordinal()) + ID))) == key) {
+                    records.put(position(old.ordinal()) + STATUS, (byte) 0);
+                }
+            }
+            written = ++writes;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return written;
+    }
+
+    @Override
+    public Optional<Ticket> findByTripIdAndSeat(String tripId, int seatNumber) {
+        return findByTripId(tripId).stream()
+                .filter(t -> t.getSeatNumber() == seatNumber)
+                .findFirst();
+    }
+
+    @Override
+    public List<Ticket> findByTripId(String tripId) {
+        long stamp = lock.readLock();
+        try {
+            IntList ordinals = byTrip.get(tripId);
+            if (ordinals == null) {
+                return List.of();
+            }
+            List<Ticket> tickets = new ArrayList<>(ordinals.size());
+            for (int i = 0; i < ordinals.size(); i++) {
+                tickets.add(read(ordinals.get(i)));
+            }
+            return tickets;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<Ticket> findByTripId(String tripId, ReadSnapshot snapshot) {
+        return findByTripId(tripId);
+    }
+
+    @Override
+    public void forgetTrip(String tripId) {
+        long stamp = lock.writeLock();
+        try {
+            IntList ordinals = byTrip.get(tripId);
+            if (ordinals != null && ordinals.isEmpty()) {
+                byTrip.remove(tripId);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        super.forgetTrip(tripId);
+    }
+
+    @Override
+    List<Ticket> liveTicketsOfTrip(String tripId) {
+        return findByTripId(tripId).stream()
+                .filter(ticket -> ticket.getStatus() != TicketStatus.CANCELLED)
+                .toList();
+    }
+
+    /**
+     * Ignored: every write is already forced to the mapped files before it returns, so a
+     * journal listener would only keep a second copy of each ticket, and replaying it at
+     * recovery would save every ticket again on top of the files.
+     */
+    @Override
+    public void setWriteListener(String repositoryName, WriteListener writeListener) {
+    }
+
+    /**
+     * Forces written records to disk so they also survive a crash of the machine. Saves and
+     * deletes already do this before they return.
+     */
+    public void flush() {
+        long stamp = lock.readLock();
+        try {
+            strings.force();
+            records.force();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long stamp = lock.writeLock();
+        try {
+            // Every write is forced below, so the replaced records can go now.
+            freeReplaced(Long.MAX_VALUE);
+            strings.force();
+            records.force();
+            strings.close();
+            records.close();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Writes the record and returns its write number for {@link #awaitFlushed}.
+     */
+    private long write(Ticket ticket, boolean reserved, long expectedVersion, boolean checkVersion) {
+        long stamp = lock.writeLock();
+        try {
+            Ticket previous = null;
+            int ordinal = lookup(ticket.getKey());
+            if (ordinal >= 0) {
+                previous = read(ordinal);
+            }
+            long storedVersion = previous == null ? 0 : previous.getVersion();
+            if (checkVersion && storedVersion != expectedVersion) {
+                throw new OptimisticLockException("Concurrent modification of " + ticket.getId()
+                        + " (expected version " + expectedVersion + ", found " + storedVersion + ")");
+            }
+            // Ids never repeat, so they are appended; every other string is interned.
+            int idRef = previous != null ? records.getInt(position(ordinal) + ID) : strings.append(ticket.getId());
+            int replacedOrdinal = ordinal;
+            ordinal = free.isEmpty() ? count : free.removeLast();
+            long position = position(ordinal);
+            records.putInt(position + SEAT, ticket.getSeatNumber());
+            records.putInt(position + ID, idRef);
+            records.putInt(position + TRIP, strings.intern(ticket.getTripId()));
+            records.putInt(position + CASHIER, strings.intern(ticket.getCashierId()));
+            records.putInt(position + BUYER, strings.intern(ticket.getBuyerName()));
+            records.putInt(position + CONTACT, strings.intern(ticket.getBuyerContact()));
+            putInstant(position + CREATED_SECONDS, position + CREATED_NANOS, ticket.getCreatedAt());
+            putInstant(position + SOLD_SECONDS, position + SOLD_NANOS, ticket.getSoldAt());
+            records.putLong(position + VERSION, storedVersion + 1);
+            ticket.setVersion(storedVersion + 1);
+            int status = ticket.getStatus().ordinal() + 1;
+            records.putInt(position + CHECKSUM, checksum(position, status));
+            records.put(position + STATUS, (byte) status);
+            if (ordinal == count) {
+                count = ordinal + 1;
+                records.putInt(COUNT_OFFSET, count);
+            }
+            if (previous != null) {
+                forget(previous, replacedOrdinal);
+                replacedOrdinals.set(replacedOrdinal);
+                replaced.add(new Replaced(replacedOrdinal, writes + 1));
+            }
+            remember(ticket, ordinal);
+            // A reserved ticket's seat and buyer slot were claimed before it was saved.
+            boolean wasLive = previous != null ? previous.getStatus() != TicketStatus.CANCELLED : reserved;
+            boolean live = ticket.getStatus() != TicketStatus.CANCELLED;
+            if (live && !wasLive) {
+                accountSold(ticket);
+            } else if (!live && wasLive) {
+                accountReleased(previous != null ? previous : ticket);
+            }
+            return ++writes;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private long writeReserved(Ticket ticket) {
+        try {
+            return write(ticket, true, 0, false);
+        } catch (RuntimeException e) {
+            // Nothing is stored before the last check can fail, so the reservation is still ours.
+            accountReleased(ticket);
+            throw e;
+        }
+    }
+
+    /**
+     * Completes with the result once the given write is on disk. Unlike the journaled stores, a
+     * failed force leaves the record written; it only may not survive a crash of the machine.
+     */
+    private <R> CompletableFuture<R> flushed(long written, R result) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                awaitFlushed(written);
+                return result;
+            }, flusher);
+        } catch (RejectedExecutionException e) {
+            awaitFlushed(written);
+            return CompletableFuture.completedFuture(result);
+        }
+    }
+
+    /**
+     * Returns once the given write is on disk. A writer that finds no force running forces
+     * everything written so far; writers arriving meanwhile wait for it, and are covered by it
+     * or by the next one, which one of them then runs for the rest.
+     */
+    private void awaitFlushed(long written) {
+        if (written == 0) {
+            return;
+        }
+        long target;
+        boolean interrupted = false;
+        synchronized (flushes) {
+            while (flushing && flushedWrites < written) {
+                try {
+                    flushes.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (flushedWrites >= written) {
+                return;
+            }
+            flushing = true;
+            target = writes;
+        }
+        boolean forced = false;
+        try {
+            flush();
+            forced = true;
+        } finally {
+            synchronized (flushes) {
+                flushing = false;
+                if (forced) {
+                    flushedWrites = Math.max(flushedWrites, target);
+                }
+                flushes.notifyAll();
+            }
+        }
+        long stamp = lock.writeLock();
+        try {
+            freeReplaced(target);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Frees the records replaced by writes up to the given one, which is on disk. Clearing
+     * their status need not be forced: a replaced copy that comes back after a crash loses to
+     * the newer version on startup.
+     */
+    private void freeReplaced(long flushed) {
+        while (!replaced.isEmpty() && replaced.peekFirst().write() <= flushed) {
+            int ordinal = replaced.pollFirst().ordinal();
+            replacedOrdinals.clear(ordinal);
+            release(ordinal);
+        }
+    }
+
+    private void remember(Ticket ticket, int ordinal) {
+        insertId(ticket.getKey(), ordinal);
+        byTrip.computeIfAbsent(ticket.getTripId(), tripId -> new IntList()).add(ordinal);
+    }
+
+    private void forget(Ticket ticket, int ordinal) {
+        removeId(ticket.getKey());
+        IntList tripOrdinals = byTrip.get(ticket.getTripId());
+        if (tripOrdinals != null) {
+            tripOrdinals.remove(ordinal);
+        }
+    }
+
+    private void release(int ordinal) {
+        records.put(position(ordinal) + STATUS, (byte) 0);
+        free.add(ordinal);
+    }
+
+    private Ticket readLocked(int ordinal) {
+        long stamp = lock.readLock();
+        try {
+            return replacedOrdinals.get(ordinal) ? null : read(ordinal);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * The ticket in the record, or null if it is free or does not match its checksum.
+     */
+    private Ticket readIntact(int ordinal) {
+        long position = position(ordinal);
+        int status = records.get(position + STATUS);
+        if (status <= 0 || status > STATUSES.length) {
+            return null;
+        }
+        try {
+            if (records.getInt(position + CHECKSUM) != checksum(position, status)) {
+                return null;
+            }
+            return read(ordinal);
+        } catch (RuntimeException e) {
+            // A string ref into a part of the string area that was never written.
+            return null;
+        }
+    }
+
+    /**
+     * CRC32 of the record as it is with the given status, and of the strings it refers to.
+     */
+    private int checksum(long position, int status) {
+        byte[] bytes = new byte[RECORD];
+        records.get(position, bytes);
+        bytes[STATUS] = (byte) status;
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, CHECKSUM);
+        crc.update(bytes, CHECKSUM + Integer.BYTES, RECORD - CHECKSUM - Integer.BYTES);
+        for (int field : STRING_FIELDS) {
+            String value = strings.get(records.getInt(position + field));
+            if (value != null) {
+                crc.update(value.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return (int) crc.getValue();
+    }
+
+    private Ticket read(int ordinal) {
+        long position = position(ordinal);
+        int status = records.get(position + STATUS);
+        if (status == 0) {
+            return null;
+        }
+        Ticket ticket = new Ticket(
+                strings.get(records.getInt(position + ID)),
+                getInstant(position + CREATED_SECONDS, position + CREATED_NANOS),
+                strings.get(records.getInt(position + TRIP)),
+                records.getInt(position + SEAT),
+                strings.get(records.getInt(position + CASHIER)),
+                strings.get(records.getInt(position + BUYER)),
+                strings.get(records.getInt(position + CONTACT)),
+                getInstant(position + SOLD_SECONDS, position + SOLD_NANOS),
+                STATUSES[status - 1]);
+        ticket.setVersion(records.getLong(position + VERSION));
+        return ticket;
+    }
+
+    private void putInstant(long secondsPosition, long nanosPosition, Instant instant) {
+        records.putLong(secondsPosition, instant == null ? NO_INSTANT : instant.getEpochSecond());
+        records.putInt(nanosPosition, instant == null ? 0 : instant.getNano());
+    }
+
+    private Instant getInstant(long secondsPosition, long nanosPosition) {
+        long seconds = records.getLong(secondsPosition);
+        return seconds == NO_INSTANT ? null : Instant.ofEpochSecond(seconds, records.getInt(nanosPosition));
+    }
+
+    private static long position(int ordinal) {
+        return HEADER + (long) ordinal * RECORD;
+    }
+
+    // Open-addressing id -> ordinal table keyed by the numeric id: slots hold ordinal + 1, 0 is
+    // empty and -1 a deleted slot.
+
+    private int lookup(long key) {
+        int mask = idSlots.length - 1;
+        for (int slot = mix(key) & mask; idSlots[slot] != 0; slot = (slot + 1) & mask) {
+            if (idSlots[slot] > 0 && idKeys[slot] == key) {
+                return idSlots[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    private void insertId(long key, int ordinal) {
+        if ((idUsed + 1) * 2 > idSlots.length) {
+            int[] oldSlots = idSlots;
+            long[] oldKeys = idKeys;
+            int live = (int) Arrays.stream(oldSlots).filter(slot -> slot > 0).count();
+            int capacity = oldSlots.length;
+            while ((live + 1) * 4 > capacity) {
+                capacity *= 2;
+            }
+            idSlots = new int[capacity];
+            idKeys = new long[capacity];
+            idUsed = 0;
+            for (int i = 0; i < oldSlots.length; i++) {
+                if (oldSlots[i] > 0) {
+                    placeId(oldKeys[i], oldSlots[i]);
+                }
+            }
+        }
+        placeId(key, ordinal + 1);
+    }
+
+    private void placeId(long key, int slotValue) {
+        int mask = idSlots.length - 1;
+        int slot = mix(key) & mask;
+        while (idSlots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        idSlots[slot] = slotValue;
+        idKeys[slot] = key;
+        idUsed++;
+    }
+
+    private void removeId(long key) {
+        int mask = idSlots.length - 1;
+        for (int slot = mix(key) & mask; idSlots[slot] != 0; slot = (slot + 1) & mask) {
+            if (idSlots[slot] > 0 && idKeys[slot] == key) {
+                // Tombstones keep later probes intact; they are dropped on the next resize.
+                idSlots[slot] = -1;
+                return;
+            }
+        }
+    }
+
+    private static int mix(long key) {
+        // Fibonacci hashing: sequence numbers of one type differ only in their low bits.
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private record Replaced(int ordinal, long write) {
+    }
+
+    /**
+     * Growable list of ordinals.
+     */
+    private static final class IntList {
+        private int[] values = new int[8];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void remove(int value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    values[i] = values[--size];
+                    return;
+                }
+            }
+        }
+
+        int removeLast() {
+            return values[--size];
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.transport.ticketing.repository;
+
+import com.transport.ticketing.model.Notification;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-user notification keys in creation order, plus a live unread count.
+ * Kept in step with the repository from its save/delete hooks, which run under the
+ * notification's lock, so the state of one notification never changes concurrently.
+ */
+final class NotificationInboxes {
+    private final Map<String, Inbox> inboxes = new ConcurrentHashMap<>();
+    // Key -> whether it is counted as unread, for every notification held in an inbox.
+    private final ConcurrentLongMap<Boolean> members = new ConcurrentLongMap<>();
+
+    void saved(Notification notification) {
+        boolean unread = notification.getReadAt() == null;
+        Boolean previous = members.put(notification.getKey(), unread);
+        Inbox inbox = inbox(notification.getUserId());
+        if (previous == null) {
+            inbox.entries.add(new Entry(notification));
+        }
+        boolean wasUnread = previous != null && previous;
+        if (unread && !wasUnread) {
+            inbox.unread.incrementAndGet();
+        } else if (!unread && wasUnread) {
+            inbox.unread.decrementAndGet();
+        }
+    }
+
+    void deleted(Notification notification) {
+        Boolean previous = members.remove(notification.getKey());
+        if (previous == null) {
+            return;
+        }
+        Inbox inbox = inbox(notification.getUserId());
+        inbox.entries.remove(new Entry(notification));
+        if (previous) {
+            inbox.unread.decrementAndGet();
+        }
+    }
+
+    int unreadCount(String userId) {
+        Inbox inbox = inboxes.get(userId);
+        return inbox == null ? 0 : inbox.unread.get();
+    }
+
+    /**
+     * Keys of the user's notifications, newest first, at most limit of them.
+     */
+    List<Long> newest(String userId, int limit) {
+        Inbox inbox = inboxes.get(userId);
+        List<Long> keys = new ArrayList<>(Math.min(limit, 64));
+        if (inbox != null) {
+            Iterator<Entry> newestFirst = inbox.entries.descendingIterator();
+            while (keys.size() < limit && newestFirst.hasNext()) {
+                keys.add(newestFirst.next().key());
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Keys of the user's unread notifications, oldest first.
+     */
+    List<Long> unread(String userId) {
+        Inbox inbox = inboxes.get(userId);
+        List<Long> keys = new ArrayList<>();
+        if (inbox != null) {
+            for (Entry entry : inbox.entries) {
+                if (Boolean.TRUE.equals(members.get(entry.key()))) {
+                    keys.add(entry.key());
+                }
+            }
+        }
+        return keys;
+    }
+
+    private Inbox inbox(String userId) {
+        return inboxes.computeIfAbsent(userId, id -> new Inbox());
+    }
+
+    private static final class Inbox {
+        // Creation order. Not key order: ids are leased in blocks per thread, so a newer
+        // notification can have a lower key. Readers iterate without locking.
+        final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>();
+        final AtomicInteger unread = new AtomicInteger();
+    }
+
+    private record Entry(Instant createdAt, long key) implements Comparable<Entry> {
+        private static final Comparator<Entry> ORDER = Comparator.comparing(Entry::createdAt)
+                .thenComparingLong(Entry::key);
+
+        Entry(Notification notification) {
+            this(notification.getCreatedAt(), notification.getKey());
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            return ORDER.compare(this, other);
+        }
+    }
+}
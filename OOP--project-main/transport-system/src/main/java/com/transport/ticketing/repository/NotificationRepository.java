@@ -1,14 +1,70 @@
 package com.transport.ticketing.repository;
 
 import com.transport.ticketing.model.Notification;
+import com.transport.ticketing.model.NotificationType;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class NotificationRepository extends InMemoryCrudRepository<Notification> {
+    private static final String BY_USER = "userId";
+    private static final String BY_USER_AND_TYPE = "userIdAndType";
+
+    private final NotificationInboxes inboxes = new NotificationInboxes();
+
+    public NotificationRepository() {
+        registerIndex(BY_USER, Notification::getUserId);
+        registerIndex(BY_USER_AND_TYPE, notification -> new UserAndType(notification.getUserId(), notification.getType()));
+    }
+
     public List<Notification> findByUserId(String userId) {
-        return findAll().stream()
-                .filter(n -> n.getUserId().equals(userId))
-                .collect(Collectors.toList());
+        return findByIndex(BY_USER, userId);
+    }
+
+    /**
+     * Live read-only view of the user's notifications of one type.
+     */
+    public Collection<Notification> viewByUserIdAndType(String userId, NotificationType type) {
+        return viewByIndex(BY_USER_AND_TYPE, new UserAndType(userId, type));
+    }
+
+    /**
+     * The user's newest notifications, newest first, read from the user's inbox without
+     * touching anyone else's notifications.
+     */
+    public List<Notification> findNewestByUserId(String userId, int limit) {
+        return resolve(inboxes.newest(userId, limit));
+    }
+
+    /**
+     * The user's unread notifications, oldest first.
+     */
+    public List<Notification> findUnreadByUserId(String userId) {
+        return resolve(inboxes.unread(userId));
+    }
+
+    public int countUnreadByUserId(String userId) {
+        return inboxes.unreadCount(userId);
+    }
+
+    @Override
+    protected void afterSave(Notification notification) {
+        inboxes.saved(notification);
+    }
+
+    @Override
+    protected void afterDelete(Notification notification) {
+        inboxes.deleted(notification);
+    }
+
+    private List<Notification> resolve(List<Long> keys) {
+        // A key may have been deleted since it was read from the inbox.
+        List<Notification> found = new ArrayList<>(keys.size());
+        keys.forEach(key -> findById(key).ifPresent(found::add));
+        return found;
+    }
+
+    private record UserAndType(String userId, NotificationType type) {
     }
-}
+}
@@ -0,0 +1,29 @@
+package com.transport.ticketing.repository;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated scan. Pass {@link #getNextToken()} back to continue after the
+ * last item; it is null once the scan is complete.
+ */
+public final class Page<T> {
+    private final List<T> items;
+    private final String nextToken;
+
+    public Page(List<T> items, String nextToken) {
+        this.items = List.copyOf(items);
+        this.nextToken = nextToken;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+}
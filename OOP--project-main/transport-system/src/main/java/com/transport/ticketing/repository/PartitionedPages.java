@@ -0,0 +1,53 @@
+package com.transport.ticketing.repository;
+
+import com.transport.ticketing.model.BaseEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Paging over partitioned repositories: partitions are scanned one after another, each in its
+ * own page order, and the token is "partition:token within the partition".
+ */
+final class PartitionedPages {
+    private PartitionedPages() {
+    }
+
+    static <T extends BaseEntity> Page<T> page(List<? extends CrudRepository<T>> partitions,
+                                               String continuationToken, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        int partition = 0;
+        String token = null;
+        if (continuationToken != null) {
+            int colon = continuationToken.indexOf(':');
+            try {
+                partition = Integer.parseInt(continuationToken.substring(0, Math.max(colon, 0)));
+            } catch (NumberFormatException ex) {
+                partition = -1;
+            }
+            if (colon < 0 || partition < 0 || partition >= partitions.size()) {
+                throw new IllegalArgumentException("Invalid continuation token: " + continuationToken);
+            }
+            token = colon == continuationToken.length() - 1 ? null : continuationToken.substring(colon + 1);
+        }
+        List<T> items = new ArrayList<>(Math.min(pageSize, 64));
+        while (partition < partitions.size()) {
+            Page<T> page = partitions.get(partition).findPage(token, pageSize - items.size());
+            items.addAll(page.getItems());
+            if (page.hasNext()) {
+                token = page.getNextToken();
+            } else {
+                partition++;
+                token = null;
+            }
+            if (items.size() == pageSize) {
+                return partition < partitions.size()
+                        ? new Page<>(items, partition + ":" + (token == null ? "" : token))
+                        : new Page<>(items, null);
+            }
+        }
+        return new Page<>(items, null);
+    }
+}
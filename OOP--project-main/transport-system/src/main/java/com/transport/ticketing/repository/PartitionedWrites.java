@@ -0,0 +1,55 @@
+package com.transport.ticketing.repository;
+
+import com.transport.ticketing.model.BaseEntity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+/**
+ * Batch saves and deletes over partitioned repositories: every entity is written to its
+ * partition before any write is waited for, so the batch still becomes durable together.
+ */
+final class PartitionedWrites {
+    private PartitionedWrites() {
+    }
+
+    static <T extends BaseEntity> List<T> saveAll(Collection<? extends T> entities,
+                                                  Function<T, CompletableFuture<T>> saveDeferred) {
+        List<CompletableFuture<T>> durable = new ArrayList<>(entities.size());
+        try {
+            for (T entity : entities) {
+                durable.add(saveDeferred.apply(entity));
+            }
+        } finally {
+            // Entities saved before a failure stay saved, so they must still become durable.
+            CompletableFuture.allOf(durable.toArray(CompletableFuture[]::new))
+                    .exceptionally(error -> null)
+                    .join();
+        }
+        List<T> saved = new ArrayList<>(durable.size());
+        for (CompletableFuture<T> future : durable) {
+            saved.add(TripPartitions.join(future));
+        }
+        return saved;
+    }
+
+    static void deleteAll(Collection<Long> keys, LongFunction<CompletableFuture<Void>> deleteDeferred) {
+        List<CompletableFuture<Void>> durable = new ArrayList<>(keys.size());
+        try {
+            for (long key : keys) {
+                durable.add(deleteDeferred.apply(key));
+            }
+        } finally {
+            CompletableFuture.allOf(durable.toArray(CompletableFuture[]::new))
+                    .exceptionally(error -> null)
+                    .join();
+        }
+        for (CompletableFuture<Void> future : durable) {
+            TripPartitions.join(future);
+        }
+    }
+}
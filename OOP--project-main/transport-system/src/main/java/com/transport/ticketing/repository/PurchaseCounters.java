@@ -0,0 +1,61 @@
+package com.transport.ticketing.repository;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Live ticket count per (trip, buyer). Buyers are compared case-insensitively. Counters are
+ * grouped by trip so a finished trip's can be dropped at once.
+ */
+final class PurchaseCounters {
+    private final Map<String, Map<String, AtomicInteger>> counters = new ConcurrentHashMap<>();
+
+    boolean tryAcquire(String tripId, String buyerName, int limit) {
+        AtomicInteger counter = counter(tripId, buyerName);
+        while (true) {
+            int current = counter.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (counter.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void increment(String tripId, String buyerName) {
+        counter(tripId, buyerName).incrementAndGet();
+    }
+
+    void decrement(String tripId, String buyerName) {
+        AtomicInteger counter = find(tripId, buyerName);
+        if (counter != null) {
+            counter.updateAndGet(current -> Math.max(0, current - 1));
+        }
+    }
+
+    int count(String tripId, String buyerName) {
+        AtomicInteger counter = find(tripId, buyerName);
+        return counter == null ? 0 : counter.get();
+    }
+
+    void removeTrip(String tripId) {
+        counters.remove(tripId);
+    }
+
+    private AtomicInteger find(String tripId, String buyerName) {
+        Map<String, AtomicInteger> buyers = counters.get(tripId);
+        return buyers == null ? null : buyers.get(buyer(buyerName));
+    }
+
+    private AtomicInteger counter(String tripId, String buyerName) {
+        return counters.computeIfAbsent(tripId, id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(buyer(buyerName), buyer -> new AtomicInteger());
+    }
+
+    private static String buyer(String buyerName) {
+        return buyerName == null ? "" : buyerName.trim().toLowerCase(Locale.ROOT);
+    }
+}
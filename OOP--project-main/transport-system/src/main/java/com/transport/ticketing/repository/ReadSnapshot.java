@@ -0,0 +1,31 @@
+package com.transport.ticketing.repository;
+
+/**
+ * A point in time to read repositories at. Reads through a snapshot see every save and delete
+ * committed before it was opened and none after, across all repositories, while writers carry
+ * on. Close it when done so the versions it kept alive can be discarded.
+ */
+public final class ReadSnapshot implements AutoCloseable {
+    private final long timestamp;
+    private boolean closed;
+
+    private ReadSnapshot(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public static ReadSnapshot open() {
+        return new ReadSnapshot(VersionClock.openReader());
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            VersionClock.closeReader(timestamp);
+        }
+    }
+}
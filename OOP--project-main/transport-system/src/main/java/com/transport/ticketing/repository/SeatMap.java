@@ -0,0 +1,83 @@
+package com.transport.ticketing.repository;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Occupancy bitmap for the seats of one trip. Seat numbers are 1-based; seat n is bit n-1.
+ * Claims and releases are compare-and-set on the 64-seat word, so concurrent cashiers never
+ * block each other and a seat can only be claimed once.
+ */
+final class SeatMap {
+    private final AtomicLongArray words;
+    private final int capacity;
+    private final AtomicInteger taken = new AtomicInteger();
+
+    SeatMap(int capacity) {
+        this.capacity = capacity;
+        this.words = new AtomicLongArray((capacity + 63) >>> 6);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    boolean isTaken(int seat) {
+        int bit = seat - 1;
+        return (words.get(bit >>> 6) & (1L << bit)) != 0;
+    }
+
+    boolean claim(int seat) {
+        int bit = seat - 1;
+        int index = bit >>> 6;
+        long mask = 1L << bit;
+        while (true) {
+            long word = words.get(index);
+            if ((word & mask) != 0) {
+                return false;
+            }
+            if (words.compareAndSet(index, word, word | mask)) {
+                taken.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    boolean release(int seat) {
+        int bit = seat - 1;
+        int index = bit >>> 6;
+        long mask = 1L << bit;
+        while (true) {
+            long word = words.get(index);
+            if ((word & mask) == 0) {
+                return false;
+            }
+            if (words.compareAndSet(index, word, word & ~mask)) {
+                taken.decrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    int taken() {
+        return taken.get();
+    }
+
+    int available() {
+        return capacity - taken.get();
+    }
+
+    /**
+     * Returns the lowest free seat number, or 0 when the trip is full.
+     */
+    int firstFree() {
+        for (int i = 0; i < words.length(); i++) {
+            long free = ~words.get(i);
+            if (free != 0) {
+                int seat = (i << 6) + Long.numberOfTrailingZeros(free) + 1;
+                return seat <= capacity ? seat : 0;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,83 @@
+package com.transport.ticketing.repository;
+
+import com.transport.ticketing.model.BaseEntity;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Non-unique key -> entities index. The last key seen for every id is remembered, so an
+ * entity that was mutated in place and re-saved is moved out of its old bucket.
+ */
+final class SecondaryIndex<T extends BaseEntity> {
+    private final Function<? super T, ?> keyExtractor;
+    private final ConcurrentLongMap<Object> keysById = new ConcurrentLongMap<>();
+    private final Map<Object, Set<T>> buckets = new ConcurrentHashMap<>();
+
+    SecondaryIndex(Function<? super T, ?> keyExtractor) {
+        this.keyExtractor = keyExtractor;
+    }
+
+    void update(T entity) {
+        Object newKey = keyExtractor.apply(entity);
+        Object oldKey = newKey == null ? keysById.remove(entity.getKey()) : keysById.put(entity.getKey(), newKey);
+        if (oldKey != null && !oldKey.equals(newKey)) {
+            removeFromBucket(oldKey, entity);
+        }
+        if (newKey != null) {
+            buckets.compute(newKey, (k, bucket) -> {
+                Set<T> target = bucket != null ? bucket : ConcurrentHashMap.newKeySet();
+                // Replace rather than add so the bucket holds the latest instance for this id.
+                target.remove(entity);
+                target.add(entity);
+                return target;
+            });
+        }
+    }
+
+    void remove(T entity) {
+        Object oldKey = keysById.remove(entity.getKey());
+        if (oldKey != null) {
+            removeFromBucket(oldKey, entity);
+        }
+    }
+
+    Object keyOf(T entity) {
+        return keyExtractor.apply(entity);
+    }
+
+    Collection<T> get(Object key) {
+        Set<T> bucket = buckets.get(key);
+        return bucket == null ? Collections.emptySet() : Collections.unmodifiableSet(bucket);
+    }
+
+    /**
+     * Live read-only view of a bucket that follows later saves and deletes.
+     */
+    Collection<T> view(Object key) {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<T> iterator() {
+                return get(key).iterator();
+            }
+
+            @Override
+            public int size() {
+                return get(key).size();
+            }
+        };
+    }
+
+    private void removeFromBucket(Object key, T entity) {
+        buckets.computeIfPresent(key, (k, bucket) -> {
+            bucket.remove(entity);
+            return bucket.isEmpty() ? null : bucket;
+        });
+    }
+}
@@ -0,0 +1,274 @@
+package com.transport.ticketing.repository;
+
+import com.transport.ticketing.model.Ticket;
+import com.transport.ticketing.model.Trip;
+import com.transport.ticketing.util.EntityId;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+
+/**
+ * Ticket repository split into one {@link TicketRepository} per partition of
+ * {@link TripPartitions}, placing every ticket, seat map and purchase counter in the partition
+ * of its trip. Everything keyed by trip touches a single partition. A ticket id does not name
+ * its trip, so the partition of every stored ticket is kept in a small id -> partition map,
+ * filled from the partitions on startup and on every save.
+ */
+public class ShardedTicketRepository extends TicketRepository implements Closeable {
+    private final TripPartitions partitions;
+    private final List<TicketRepository> shards;
+    // Ticket key -> partition. Partition numbers are small, so the boxed values are cached.
+    private final ConcurrentLongMap<Integer> locations = new ConcurrentLongMap<>();
+
+    /**
+     * @param shardFactory creates the store of the given partition, e.g. a
+     *                     {@link MappedTicketRepository} in a directory of its own
+     */
+    public ShardedTicketRepository(TripPartitions partitions, IntFunction<? extends TicketRepository> shardFactory) {
+        this.partitions = partitions;
+        List<TicketRepository> created = new ArrayList<>(partitions.count());
+        for (int partition = 0; partition < partitions.count(); partition++) {
+            created.add(shardFactory.apply(partition));
+        }
+        this.shards = List.copyOf(created);
+        for (int partition = 0; partition < shards.size(); partition++) {
+            Integer location = partition;
+            shards.get(partition).forEach(ticket -> locations.put(ticket.getKey(), location));
+        }
+    }
+
+    @Override
+    public void setWriteListener(String repositoryName, WriteListener writeListener) {
+        shards.forEach(shard -> shard.setWriteListener(repositoryName, writeListener));
+    }
+
+    @Override
+    public Ticket save(Ticket ticket) {
+        return locate(ticket).save(ticket);
+    }
+
+    @Override
+    public Ticket save(Ticket ticket, long expectedVersion) {
+        return locate(ticket).save(ticket, expectedVersion);
+    }
+
+    @Override
+    public List<Ticket> saveAll(Collection<? extends Ticket> tickets) {
+        return PartitionedWrites.saveAll(tickets, this::saveDeferred);
+    }
+
+    @Override
+    public CompletableFuture<Ticket> saveDeferred(Ticket ticket) {
+        return locate(ticket).saveDeferred(ticket);
+    }
+
+    @Override
+    public Ticket saveReserved(Ticket ticket) {
+        return locate(ticket).saveReserved(ticket);
+    }
+
+    @Override
+    public CompletableFuture<Ticket> saveReservedDeferred(Ticket ticket) {
+        return locate(ticket).saveReservedDeferred(ticket);
+    }
+
+    @Override
+    public Optional<Ticket> findById(String id) {
+        long key = EntityId.parse(id);
+        return key == 0 ? Optional.empty() : findById(key);
+    }
+
+    @Override
+    public Optional<Ticket> findById(long key) {
+        Integer partition = locations.get(key);
+        return partition == null ? Optional.empty() : shards.get(partition).findById(key);
+    }
+
+    /**
+     * A ticket deleted after the snapshot was opened is no longer in the partition map, so a
+     * miss there asks each partition in turn.
+     */
+    @Override
+    public Optional<Ticket> findById(String id, ReadSnapshot snapshot) {
+        Integer partition = locations.get(EntityId.parse(id));
+        if (partition != null) {
+            return shards.get(partition).findById(id, snapshot);
+        }
+        for (TicketRepository shard : shards) {
+            Optional<Ticket> ticket = shard.findById(id, snapshot);
+            if (ticket.isPresent()) {
+                return ticket;
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public List<Ticket> findAll() {
+        List<Ticket> tickets = new ArrayList<>();
+        shards.forEach(shard -> tickets.addAll(shard.findAll()));
+        return tickets;
+    }
+
+    @Override
+    public List<Ticket> findAll(ReadSnapshot snapshot) {
+        List<Ticket> tickets = new ArrayList<>();
+        shards.forEach(shard -> tickets.addAll(shard.findAll(snapshot)));
+        return tickets;
+    }
+
+    @Override
+    public Stream<Ticket> stream() {
+        return shards.stream().flatMap(TicketRepository::stream);
+    }
+
+    @Override
+    public void forEach(Consumer<? super Ticket> action) {
+        shards.forEach(shard -> shard.forEach(action));
+    }
+
+    /**
+     * Pages walk the partitions one after another, each in its own page order.
+     */
+    @Override
+    public Page<Ticket> findPage(String continuationToken, int pageSize) {
+        return PartitionedPages.page(shards, continuationToken, pageSize);
+    }
+
+    @Override
+    public void deleteById(String id) {
+        long key = EntityId.parse(id);
+        if (key != 0) {
+            deleteById(key);
+        }
+    }
+
+    @Override
+    public void deleteById(long key) {
+        Integer partition = locations.get(key);
+        if (partition != null) {
+            shards.get(partition).deleteById(key);
+            locations.remove(key);
+        }
+    }
+
+    @Override
+    public void deleteAllById(Collection<Long> keys) {
+        PartitionedWrites.deleteAll(keys, this::deleteDeferred);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteDeferred(long key) {
+        Integer partition = locations.get(key);
+        if (partition == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // Kept until the delete is durable: a delete that fails is undone and the ticket stays.
+        return shards.get(partition).deleteDeferred(key).thenRun(() -> locations.remove(key));
+    }
+
+    @Override
+    public Optional<Ticket> findByTripIdAndSeat(String tripId, int seatNumber) {
+        return shard(tripId).findByTripIdAndSeat(tripId, seatNumber);
+    }
+
+    @Override
+    public List<Ticket> findByTripId(String tripId) {
+        return shard(tripId).findByTripId(tripId);
+    }
+
+    @Override
+    public List<Ticket> findByTripId(String tripId, ReadSnapshot snapshot) {
+        return shard(tripId).findByTripId(tripId, snapshot);
+    }
+
+    @Override
+    public long countByTripAndBuyer(String tripId, String buyerName) {
+        return shard(tripId).countByTripAndBuyer(tripId, buyerName);
+    }
+
+    @Override
+    public boolean isSeatTaken(Trip trip, int seatNumber) {
+        return shard(trip.getId()).isSeatTaken(trip, seatNumber);
+    }
+
+    @Override
+    public boolean claimSeat(Trip trip, int seatNumber) {
+        return shard(trip.getId()).claimSeat(trip, seatNumber);
+    }
+
+    @Override
+    public void releaseSeat(Trip trip, int seatNumber) {
+        shard(trip.getId()).releaseSeat(trip, seatNumber);
+    }
+
+    @Override
+    public boolean reservePurchase(Trip trip, String buyerName) {
+        return shard(trip.getId()).reservePurchase(trip, buyerName);
+    }
+
+    @Override
+    public void releasePurchase(Trip trip, String buyerName) {
+        shard(trip.getId()).releasePurchase(trip, buyerName);
+    }
+
+    @Override
+    public void forgetTrip(String tripId) {
+        shard(tripId).forgetTrip(tripId);
+    }
+
+    @Override
+    public int soldSeats(Trip trip) {
+        return shard(trip.getId()).soldSeats(trip);
+    }
+
+    @Override
+    public int availableSeats(Trip trip) {
+        return shard(trip.getId()).availableSeats(trip);
+    }
+
+    @Override
+    public int firstFreeSeat(Trip trip) {
+        return shard(trip.getId()).firstFreeSeat(trip);
+    }
+
+    @Override
+    List<Ticket> liveTicketsOfTrip(String tripId) {
+        return shard(tripId).liveTicketsOfTrip(tripId);
+    }
+
+    /**
+     * Closes the partition stores that hold files.
+     */
+    @Override
+    public void close() throws IOException {
+        for (TicketRepository shard : shards) {
+            if (shard instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private TicketRepository shard(String tripId) {
+        return shards.get(partitions.partitionOf(tripId));
+    }
+
+    /**
+     * The ticket's partition, recorded before the save so a ticket is never stored without
+     * being findable by id. A failed save can leave an entry for a missing ticket, which only
+     * makes its lookups go to that partition and find nothing.
+     */
+    private TicketRepository locate(Ticket ticket) {
+        int partition = partitions.partitionOf(ticket.getTripId());
+        locations.put(ticket.getKey(), partition);
+        return shards.get(partition);
+    }
+}
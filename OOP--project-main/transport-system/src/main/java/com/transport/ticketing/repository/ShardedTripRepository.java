@@ -0,0 +1,188 @@
+package com.transport.ticketing.repository;
+
+import com.transport.ticketing.model.Trip;
+import com.transport.ticketing.model.TripStatus;
+import com.transport.ticketing.util.EntityId;
+
+import java.time.LocalDateTime;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Trip repository split into one {@link TripRepository} per partition of {@link TripPartitions}.
+ * Lookups by id go to a single partition; queries over all trips ask every partition and merge
+ * the answers, keeping the order the unpartitioned repository returns.
+ */
+public class ShardedTripRepository extends TripRepository {
+    private static final Comparator<Trip> BY_DEPARTURE =
+            Comparator.comparing(Trip::getDeparture).thenComparingLong(Trip::getKey);
+
+    private final TripPartitions partitions;
+    private final List<TripRepository> shards;
+
+    public ShardedTripRepository(TripPartitions partitions) {
+        this.partitions = partitions;
+        List<TripRepository> created = new ArrayList<>(partitions.count());
+        for (int partition = 0; partition < partitions.count(); partition++) {
+            created.add(new TripRepository());
+        }
+        this.shards = List.copyOf(created);
+    }
+
+    @Override
+    public void setWriteListener(String repositoryName, WriteListener writeListener) {
+        shards.forEach(shard -> shard.setWriteListener(repositoryName, writeListener));
+    }
+
+    @Override
+    public Trip save(Trip trip) {
+        return shard(trip.getKey()).save(trip);
+    }
+
+    @Override
+    public Trip save(Trip trip, long expectedVersion) {
+        return shard(trip.getKey()).save(trip, expectedVersion);
+    }
+
+    @Override
+    public List<Trip> saveAll(Collection<? extends Trip> trips) {
+        return PartitionedWrites.saveAll(trips, this::saveDeferred);
+    }
+
+    @Override
+    public CompletableFuture<Trip> saveDeferred(Trip trip) {
+        return shard(trip.getKey()).saveDeferred(trip);
+    }
+
+    @Override
+    public Optional<Trip> findById(String id) {
+        long key = EntityId.parse(id);
+        return key == 0 ? Optional.empty() : findById(key);
+    }
+
+    @Override
+    public Optional<Trip> findById(long key) {
+        return shard(key).findById(key);
+    }
+
+    @Override
+    public Optional<Trip> findById(String id, ReadSnapshot snapshot) {
+        long key = EntityId.parse(id);
+        return key == 0 ? Optional.empty() : shard(key).findById(id, snapshot);
+    }
+
+    @Override
+    public List<Trip> findAll() {
+        return collect(TripRepository::findAll);
+    }
+
+    @Override
+    public List<Trip> findAll(ReadSnapshot snapshot) {
+        return collect(shard -> shard.findAll(snapshot));
+    }
+
+    @Override
+    public Stream<Trip> stream() {
+        return shards.stream().flatMap(TripRepository::stream);
+    }
+
+    @Override
+    public void forEach(Consumer<? super Trip> action) {
+        shards.forEach(shard -> shard.forEach(action));
+    }
+
+    /**
+     * Pages walk the partitions one after another, each in id order.
+     */
+    @Override
+    public Page<Trip> findPage(String continuationToken, int pageSize) {
+        return PartitionedPages.page(shards, continuationToken, pageSize);
+    }
+
+    @Override
+    public void deleteById(String id) {
+        long key = EntityId.parse(id);
+        if (key != 0) {
+            deleteById(key);
+        }
+    }
+
+    @Override
+    public void deleteById(long key) {
+        shard(key).deleteById(key);
+    }
+
+    @Override
+    public void deleteAllById(Collection<Long> keys) {
+        PartitionedWrites.deleteAll(keys, this::deleteDeferred);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteDeferred(long key) {
+        return shard(key).deleteDeferred(key);
+    }
+
+    @Override
+    public List<Trip> findByOrganizer(String companyId) {
+        return collect(shard -> shard.findByOrganizer(companyId));
+    }
+
+    @Override
+    public List<Trip> findByDepartureBetween(LocalDateTime from, LocalDateTime to) {
+        List<Trip> trips = collect(shard -> shard.findByDepartureBetween(from, to));
+        trips.sort(BY_DEPARTURE);
+        return trips;
+    }
+
+    @Override
+    public List<Trip> findByDepartureBetween(LocalDateTime from, LocalDateTime to, ReadSnapshot snapshot) {
+        List<Trip> trips = collect(shard -> shard.findByDepartureBetween(from, to, snapshot));
+        trips.sort(BY_DEPARTURE);
+        return trips;
+    }
+
+    @Override
+    public List<Trip> findByStatus(TripStatus status) {
+        return collect(shard -> shard.findByStatus(status));
+    }
+
+    @Override
+    public List<Trip> findActive() {
+        return collect(TripRepository::findActive);
+    }
+
+    @Override
+    public Collection<Trip> activeView() {
+        List<Collection<Trip>> views = shards.stream().map(TripRepository::activeView).toList();
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Trip> iterator() {
+                return views.stream().flatMap(Collection::stream).iterator();
+            }
+
+            @Override
+            public int size() {
+                return views.stream().mapToInt(Collection::size).sum();
+            }
+        };
+    }
+
+    private TripRepository shard(long key) {
+        return shards.get(partitions.partitionOf(key));
+    }
+
+    private List<Trip> collect(Function<TripRepository, List<Trip>> query) {
+        List<Trip> trips = new ArrayList<>();
+        shards.forEach(shard -> trips.addAll(query.apply(shard)));
+        return trips;
+    }
+}
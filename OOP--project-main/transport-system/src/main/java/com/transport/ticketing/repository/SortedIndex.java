@@ -0,0 +1,114 @@
+package com.transport.ticketing.repository;
+
+import com.transport.ticketing.model.BaseEntity;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+/**
+ * Ordered index on a comparable key, with the entity id as tie-breaker so equal keys coexist.
+ * Range lookups cost O(log N + k).
+ */
+final class SortedIndex<T extends BaseEntity, K extends Comparable<? super K>> {
+    private final Function<? super T, ? extends K> keyExtractor;
+    private final ConcurrentLongMap<Entry<K>> entriesById = new ConcurrentLongMap<>();
+    private final NavigableMap<Entry<K>, T> entries = new ConcurrentSkipListMap<>();
+
+    SortedIndex(Function<? super T, ? extends K> keyExtractor) {
+        this.keyExtractor = keyExtractor;
+    }
+
+    void update(T entity) {
+        K key = keyExtractor.apply(entity);
+        Entry<K> newEntry = key == null ? null : new Entry<>(key, entity.getKey(), 0);
+        Entry<K> oldEntry = newEntry == null
+                ? entriesById.remove(entity.getKey())
+                : entriesById.put(entity.getKey(), newEntry);
+        if (oldEntry != null && !oldEntry.equals(newEntry)) {
+            entries.remove(oldEntry);
+        }
+        if (newEntry != null) {
+            entries.put(newEntry, entity);
+        }
+    }
+
+    void remove(T entity) {
+        Entry<K> oldEntry = entriesById.remove(entity.getKey());
+        if (oldEntry != null) {
+            entries.remove(oldEntry);
+        }
+    }
+
+    /**
+     * Entities whose key lies in [from, to], in key order. A null bound is open.
+     */
+    List<T> range(K from, K to) {
+        NavigableMap<Entry<K>, T> view = entries;
+        if (from != null && to != null) {
+            if (from.compareTo(to) > 0) {
+                return new ArrayList<>();
+            }
+            view = entries.subMap(new Entry<>(from, 0, -1), true, new Entry<>(to, 0, 1), true);
+        } else if (from != null) {
+            view = entries.tailMap(new Entry<>(from, 0, -1), true);
+        } else if (to != null) {
+            view = entries.headMap(new Entry<>(to, 0, 1), true);
+        }
+        return new ArrayList<>(view.values());
+    }
+
+    /**
+     * Whether the entity's key lies in [from, to], judged the same way as {@link #range}.
+     */
+    boolean inRange(T entity, K from, K to) {
+        K key = keyExtractor.apply(entity);
+        return key != null
+                && (from == null || key.compareTo(from) >= 0)
+                && (to == null || key.compareTo(to) <= 0);
+    }
+
+    /**
+     * The order range lookups return entities in.
+     */
+    Comparator<T> order() {
+        return Comparator.<T, K>comparing(keyExtractor).thenComparingLong(BaseEntity::getKey);
+    }
+
+    /**
+     * Up to limit entities with a key strictly greater than after (or from the start when null).
+     */
+    List<T> after(K after, int limit) {
+        NavigableMap<Entry<K>, T> view = after == null ? entries : entries.tailMap(new Entry<>(after, 0, 1), false);
+        List<T> page = new ArrayList<>(Math.min(limit, 64));
+        for (T entity : view.values()) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(entity);
+        }
+        return page;
+    }
+
+    /**
+     * Sort key. Range bounds carry no id (0) and a bias that places them before (-1) or after (+1)
+     * every entry with the same key.
+     */
+    private record Entry<K extends Comparable<? super K>>(K key, long id, int bias)
+            implements Comparable<Entry<K>> {
+        @Override
+        public int compareTo(Entry<K> other) {
+            int byKey = key.compareTo(other.key);
+            if (byKey != 0) {
+                return byKey;
+            }
+            if (bias != other.bias) {
+                return Integer.compare(bias, other.bias);
+            }
+            return Long.compare(id, other.id);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.transport.ticketing.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Append-only string storage in a mapped file. A string is referenced by an int ref (its file
+ * position / 8), so records can point to strings with a fixed-width field; ref 0 means null.
+ * Interned strings are stored once and found again through an open-addressing table that only
+ * holds refs and hashes, never the strings themselves.
+ * <p>
+ * Writes must be serialized by the caller; reads of refs published by those writes are safe.
+ */
+final class StringArea implements Closeable {
+    private static final int MAGIC = 0x53545241;
+    private static final int HEADER = 64;
+    private static final int END_OFFSET = 8;
+    private static final int CHUNK_SIZE = 4 << 20;
+    private static final int INTERNED = 1 << 31;
+
+    private final MappedFile file;
+    private long end;
+    private int[] refs = new int[1024];
+    private int[] hashes = new int[1024];
+    private int interned;
+
+    StringArea(Path path) throws IOException {
+        this.file = new MappedFile(path, CHUNK_SIZE);
+        if (file.getInt(0) != MAGIC) {
+            file.putInt(0, MAGIC);
+            end = HEADER;
+            file.putLong(END_OFFSET, end);
+            return;
+        }
+        end = file.getLong(END_OFFSET);
+        long position = HEADER;
+        while (position < end) {
+            int header = file.getInt(position);
+            if (header == 0) {
+                // Padding left when an entry did not fit in the rest of a chunk.
+                position = (position / CHUNK_SIZE + 1) * CHUNK_SIZE;
+                continue;
+            }
+            if ((header & INTERNED) != 0) {
+                int ref = (int) (position >>> 3);
+                insert(get(ref).hashCode(), ref);
+            }
+            position = align(position + Integer.BYTES + (header & ~INTERNED) - 1);
+        }
+    }
+
+    /**
+     * Returns the ref of an equal string already interned, storing it first if there is none.
+     */
+    int intern(String value) {
+        if (value == null) {
+            return 0;
+        }
+        int hash = value.hashCode();
+        int mask = refs.length - 1;
+        for (int slot = mix(hash) & mask; refs[slot] != 0; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && value.equals(get(refs[slot]))) {
+                return refs[slot];
+            }
+        }
+        int ref = write(value, INTERNED);
+        insert(hash, ref);
+        return ref;
+    }
+
+    /**
+     * Stores a string that is not expected to repeat, such as an id.
+     */
+    int append(String value) {
+        return value == null ? 0 : write(value, 0);
+    }
+
+    String get(int ref) {
+        if (ref == 0) {
+            return null;
+        }
+        long position = (long) ref << 3;
+        byte[] bytes = new byte[(file.getInt(position) & ~INTERNED) - 1];
+        file.get(position + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    void force() {
+        file.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private int write(String value, int flags) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int size = Integer.BYTES + bytes.length;
+        if (size > CHUNK_SIZE) {
+            throw new IllegalArgumentException("String too long to store: " + bytes.length + " bytes");
+        }
+        long position = end;
+        if (position % CHUNK_SIZE + size > CHUNK_SIZE) {
+            position = (position / CHUNK_SIZE + 1) * CHUNK_SIZE;
+        }
+        file.put(position + Integer.BYTES, bytes);
+        // The length is stored +1 so that a zero header always means padding.
+        file.putInt(position, (bytes.length + 1) | flags);
+        end = align(position + size);
+        file.putLong(END_OFFSET, end);
+        return (int) (position >>> 3);
+    }
+
+    private void insert(int hash, int ref) {
+        if ((interned + 1) * 2 > refs.length) {
+            int[] oldRefs = refs;
+            int[] oldHashes = hashes;
+            refs = new int[oldRefs.length * 2];
+            hashes = new int[oldRefs.length * 2];
+            for (int i = 0; i < oldRefs.length; i++) {
+                if (oldRefs[i] != 0) {
+                    place(oldHashes[i], oldRefs[i]);
+                }
+            }
+        }
+        place(hash, ref);
+        interned++;
+    }
+
+    private void place(int hash, int ref) {
+        int mask = refs.length - 1;
+        int slot = mix(hash) & mask;
+        while (refs[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        refs[slot] = ref;
+        hashes[slot] = hash;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+}
@@ -1,27 +1,205 @@
 package com.transport.ticketing.repository;
 
 import com.transport.ticketing.model.Ticket;
+import com.transport.ticketing.model.TicketStatus;
+import com.transport.ticketing.model.Trip;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class TicketRepository extends InMemoryCrudRepository<Ticket> {
+    private static final String BY_TRIP = "tripId";
+
+    private final Map<String, SeatMap> seatMaps = new ConcurrentHashMap<>();
+    private final PurchaseCounters purchases = new PurchaseCounters();
+    // Ids of non-cancelled tickets already accounted for in the seat maps and purchase counters,
+    // so re-saving a ticket never claims or frees its seat (or buyer slot) twice.
+    private final ConcurrentLongMap<Boolean> liveTickets = new ConcurrentLongMap<>();
+    // Ids being saved by saveReserved whose seat and buyer slot are already counted. afterSave
+    // takes the entry over once the ticket is in the store.
+    private final ConcurrentLongMap<Boolean> reservedTickets = new ConcurrentLongMap<>();
+
+    public TicketRepository() {
+        registerIndex(BY_TRIP, Ticket::getTripId);
+    }
+
     public Optional<Ticket> findByTripIdAndSeat(String tripId, int seatNumber) {
-        return findAll().stream()
-                .filter(t -> t.getTripId().equals(tripId) && t.getSeatNumber() == seatNumber)
+        return findByIndex(BY_TRIP, tripId).stream()
+                .filter(t -> t.getSeatNumber() == seatNumber)
                 .findFirst();
     }
 
     public List<Ticket> findByTripId(String tripId) {
-        return findAll().stream()
-                .filter(t -> t.getTripId().equals(tripId))
-                .collect(Collectors.toList());
+        return findByIndex(BY_TRIP, tripId);
+    }
+
+    public List<Ticket> findByTripId(String tripId, ReadSnapshot snapshot) {
+        return findByIndex(BY_TRIP, tripId, snapshot);
     }
 
+    /**
+     * Number of non-cancelled tickets of the trip sold to the buyer, ignoring case.
+     */
     public long countByTripAndBuyer(String tripId, String buyerName) {
-        return findAll().stream()
-                .filter(t -> t.getTripId().equals(tripId) && t.getBuyerName().equalsIgnoreCase(buyerName))
-                .count();
+        return purchases.count(tripId, buyerName);
+    }
+
+    public boolean isSeatTaken(Trip trip, int seatNumber) {
+        SeatMap seats = seatsFor(trip);
+        return inRange(seats, seatNumber) && seats.isTaken(seatNumber);
+    }
+
+    /**
+     * Atomically marks the seat as sold. Returns false if it is out of range or already taken;
+     * a successful claim must be followed by {@link #saveReserved} or by {@link #releaseSeat}.
+     */
+    public boolean claimSeat(Trip trip, int seatNumber) {
+        SeatMap seats = seatsFor(trip);
+        return inRange(seats, seatNumber) && seats.claim(seatNumber);
+    }
+
+    public void releaseSeat(Trip trip, int seatNumber) {
+        SeatMap seats = seatsFor(trip);
+        if (inRange(seats, seatNumber)) {
+            seats.release(seatNumber);
+        }
+    }
+
+    /**
+     * Atomically checks the per-person limit and counts one more ticket for the buyer.
+     * A successful reservation must be followed by {@link #saveReserved} or {@link #releasePurchase}.
+     */
+    public boolean reservePurchase(Trip trip, String buyerName) {
+        return purchases.tryAcquire(trip.getId(), buyerName, trip.getPerPersonLimit());
+    }
+
+    public void releasePurchase(Trip trip, String buyerName) {
+        purchases.decrement(trip.getId(), buyerName);
+    }
+
+    /**
+     * Saves a newly sold ticket whose seat and buyer slot were already taken with
+     * {@link #claimSeat} and {@link #reservePurchase}. Once the ticket is stored they belong to
+     * it, and are released with it if it is taken out again for failing to reach the journal;
+     * if it never makes it into the store, they are released here before the exception is
+     * rethrown.
+     */
+    public Ticket saveReserved(Ticket ticket) {
+        return TripPartitions.join(saveReservedDeferred(ticket));
+    }
+
+    /**
+     * As {@link #saveReserved}, but returns once the ticket is stored; see
+     * {@link #saveDeferred}.
+     */
+    public CompletableFuture<Ticket> saveReservedDeferred(Ticket ticket) {
+        reservedTickets.put(ticket.getKey(), Boolean.TRUE);
+        try {
+            return saveDeferred(ticket);
+        } finally {
+            if (reservedTickets.remove(ticket.getKey()) != null) {
+                accountReleased(ticket);
+            }
+        }
+    }
+
+    /**
+     * Drops the seat map and purchase counters of a trip that is gone for good, e.g. archived,
+     * once its tickets have been deleted.
+     */
+    public void forgetTrip(String tripId) {
+        seatMaps.remove(tripId);
+        purchases.removeTrip(tripId);
+    }
+
+    public int soldSeats(Trip trip) {
+        return seatsFor(trip).taken();
+    }
+
+    public int availableSeats(Trip trip) {
+        return seatsFor(trip).available();
+    }
+
+    /**
+     * Returns the lowest unsold seat of the trip, or 0 when it is sold out.
+     */
+    public int firstFreeSeat(Trip trip) {
+        return seatsFor(trip).firstFree();
+    }
+
+    @Override
+    protected void afterSave(Ticket ticket) {
+        if (ticket.getStatus() != TicketStatus.CANCELLED) {
+            if (liveTickets.putIfAbsent(ticket.getKey(), Boolean.TRUE) == null
+                    && reservedTickets.remove(ticket.getKey()) == null) {
+                accountSold(ticket);
+            }
+        } else {
+            release(ticket);
+        }
+    }
+
+    @Override
+    protected void afterDelete(Ticket ticket) {
+        release(ticket);
+    }
+
+    /**
+     * Live (non-cancelled) tickets of the trip, used to rebuild its seat map.
+     */
+    List<Ticket> liveTicketsOfTrip(String tripId) {
+        return findByIndex(BY_TRIP, tripId).stream()
+                .filter(ticket -> liveTickets.get(ticket.getKey()) != null)
+                .toList();
+    }
+
+    void accountSold(Ticket ticket) {
+        SeatMap seats = seatMaps.get(ticket.getTripId());
+        if (seats != null && inRange(seats, ticket.getSeatNumber())) {
+            seats.claim(ticket.getSeatNumber());
+        }
+        purchases.increment(ticket.getTripId(), ticket.getBuyerName());
+    }
+
+    void accountReleased(Ticket ticket) {
+        SeatMap seats = seatMaps.get(ticket.getTripId());
+        if (seats != null && inRange(seats, ticket.getSeatNumber())) {
+            seats.release(ticket.getSeatNumber());
+        }
+        purchases.decrement(ticket.getTripId(), ticket.getBuyerName());
+    }
+
+    private void release(Ticket ticket) {
+        if (liveTickets.remove(ticket.getKey()) != null) {
+            accountReleased(ticket);
+        }
+    }
+
+    private SeatMap seatsFor(Trip trip) {
+        SeatMap current = seatMaps.get(trip.getId());
+        if (current != null && current.capacity() == trip.getSeatsTotal()) {
+            return current;
+        }
+        // Built lazily from the trip's live tickets the first time the trip is touched, and
+        // rebuilt if the trip was resized or replaced by a new trip with the same id.
+        return seatMaps.compute(trip.getId(), (tripId, existing) -> {
+            if (existing != null && existing.capacity() == trip.getSeatsTotal()) {
+                return existing;
+            }
+            SeatMap seats = new SeatMap(trip.getSeatsTotal());
+            for (Ticket ticket : liveTicketsOfTrip(tripId)) {
+                if (inRange(seats, ticket.getSeatNumber())) {
+                    seats.claim(ticket.getSeatNumber());
+                }
+            }
+            return seats;
+        });
+    }
+
+    private static boolean inRange(SeatMap seats, int seatNumber) {
+        return seatNumber > 0 && seatNumber <= seats.capacity();
     }
-}
+}
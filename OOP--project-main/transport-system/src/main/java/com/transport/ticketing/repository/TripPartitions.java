@@ -0,0 +1,127 @@
+package com.transport.ticketing.repository;
+
+import com.transport.ticketing.util.EntityId;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Splits trips into a fixed number of partitions by trip id. Each partition has one writer
+ * thread; work submitted for a trip runs there, so sales of the same trip are serialized
+ * without locks while different partitions proceed in parallel. The sharded repositories use
+ * the same routing, so a partition's trips and tickets live in its own stores.
+ * <p>
+ * A task must not wait for another partition, or two partitions could wait on each other.
+ */
+public final class TripPartitions implements Closeable {
+    private final ExecutorService[] writers;
+    private final Thread[] threads;
+
+    public TripPartitions(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Partition count must be positive: " + count);
+        }
+        writers = new ExecutorService[count];
+        threads = new Thread[count];
+        for (int partition = 0; partition < count; partition++) {
+            int index = partition;
+            writers[partition] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "trip-partition-" + index);
+                thread.setDaemon(true);
+                threads[index] = thread;
+                return thread;
+            });
+        }
+    }
+
+    public int count() {
+        return writers.length;
+    }
+
+    public int partitionOf(String tripId) {
+        long key = EntityId.parse(tripId);
+        return key != 0 ? partitionOf(key) : Math.floorMod(tripId.hashCode(), writers.length);
+    }
+
+    public int partitionOf(long tripKey) {
+        long h = tripKey * 0x9E3779B97F4A7C15L;
+        return Math.floorMod((int) (h ^ (h >>> 32)), writers.length);
+    }
+
+    /**
+     * Runs the task on the trip's writer thread and waits for it, rethrowing what it throws.
+     * Called from that thread already, it simply runs the task.
+     */
+    public <R> R call(String tripId, Supplier<R> task) {
+        int partition = partitionOf(tripId);
+        if (Thread.currentThread() == threads[partition]) {
+            return task.get();
+        }
+        Future<R> result = writers[partition].submit(task::get);
+        try {
+            return result.get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (ex.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            result.cancel(false);
+            throw new IllegalStateException("Interrupted while waiting for trip " + tripId, ex);
+        }
+    }
+
+    /**
+     * As {@link #call}, for a task that returns a future: only the task runs on the writer
+     * thread, and the future is waited for on the calling thread, so the writer can go on with
+     * the next task meanwhile (e.g. while a sale waits for its journal write).
+     */
+    public <R> R callAndJoin(String tripId, Supplier<CompletableFuture<R>> task) {
+        return join(call(tripId, task));
+    }
+
+    /**
+     * Waits for the future and rethrows its failure as {@link #call} does.
+     */
+    public static <R> R join(CompletableFuture<R> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (ex.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    /**
+     * Stops the writer threads after the work already submitted.
+     */
+    @Override
+    public void close() {
+        for (ExecutorService writer : writers) {
+            writer.shutdown();
+        }
+        try {
+            for (ExecutorService writer : writers) {
+                writer.awaitTermination(10, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -3,19 +3,70 @@ package com.transport.ticketing.repository;
 import com.transport.ticketing.model.Trip;
 import com.transport.ticketing.model.TripStatus;
 
+import java.time.LocalDateTime;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class TripRepository extends InMemoryCrudRepository<Trip> {
+    private static final String BY_ORGANIZER = "organizerCompanyId";
+    private static final String BY_DEPARTURE = "departure";
+    private static final String BY_STATUS = "status";
+
+    public TripRepository() {
+        registerIndex(BY_ORGANIZER, Trip::getOrganizerCompanyId);
+        registerSortedIndex(BY_DEPARTURE, Trip::getDeparture);
+        registerIndex(BY_STATUS, Trip::getStatus);
+    }
+
     public List<Trip> findByOrganizer(String companyId) {
-        return findAll().stream()
-                .filter(t -> t.getOrganizerCompanyId().equals(companyId))
-                .collect(Collectors.toList());
+        return findByIndex(BY_ORGANIZER, companyId);
+    }
+
+    /**
+     * Trips departing within [from, to], ordered by departure. A null bound is open; trips
+     * rescheduled with setDeparture are re-indexed when they are saved again.
+     */
+    public List<Trip> findByDepartureBetween(LocalDateTime from, LocalDateTime to) {
+        return findRangeByIndex(BY_DEPARTURE, from, to);
+    }
+
+    public List<Trip> findByDepartureBetween(LocalDateTime from, LocalDateTime to, ReadSnapshot snapshot) {
+        return findRangeByIndex(BY_DEPARTURE, from, to, snapshot);
+    }
+
+    public List<Trip> findByStatus(TripStatus status) {
+        return findByIndex(BY_STATUS, status);
     }
 
+    /**
+     * Snapshot of the sellable (ACTIVE or APPROVED) trips, read from the status partitions only.
+     */
     public List<Trip> findActive() {
-        return findAll().stream()
-                .filter(t -> t.getStatus() == TripStatus.ACTIVE || t.getStatus() == TripStatus.APPROVED)
-                .collect(Collectors.toList());
+        List<Trip> active = findByIndex(BY_STATUS, TripStatus.ACTIVE);
+        active.addAll(findByIndex(BY_STATUS, TripStatus.APPROVED));
+        return active;
+    }
+
+    /**
+     * Live read-only view of the sellable trips. It reflects status changes as soon as the
+     * trip is saved, without copying or touching completed and cancelled trips.
+     */
+    public Collection<Trip> activeView() {
+        Collection<Trip> active = viewByIndex(BY_STATUS, TripStatus.ACTIVE);
+        Collection<Trip> approved = viewByIndex(BY_STATUS, TripStatus.APPROVED);
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Trip> iterator() {
+                return Stream.concat(active.stream(), approved.stream()).iterator();
+            }
+
+            @Override
+            public int size() {
+                return active.size() + approved.size();
+            }
+        };
     }
-}
+}
@@ -3,12 +3,21 @@ package com.transport.ticketing.repository;
 import com.transport.ticketing.model.TripRequest;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class TripRequestRepository extends InMemoryCrudRepository<TripRequest> {
+    private static final String BY_TRIP = "tripId";
+    private static final String BY_DISTRIBUTOR = "distributorId";
+
+    public TripRequestRepository() {
+        registerIndex(BY_TRIP, TripRequest::getTripId);
+        registerIndex(BY_DISTRIBUTOR, TripRequest::getDistributorId);
+    }
+
     public List<TripRequest> findByTripId(String tripId) {
-        return findAll().stream()
-                .filter(r -> r.getTripId().equals(tripId))
-                .collect(Collectors.toList());
+        return findByIndex(BY_TRIP, tripId);
+    }
+
+    public List<TripRequest> findByDistributorId(String distributorId) {
+        return findByIndex(BY_DISTRIBUTOR, distributorId);
     }
-}
+}
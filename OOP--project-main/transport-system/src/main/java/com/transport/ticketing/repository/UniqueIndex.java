@@ -0,0 +1,74 @@
+package com.transport.ticketing.repository;
+
+import com.transport.ticketing.exception.DuplicateKeyException;
+import com.transport.ticketing.model.BaseEntity;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Unique key -> entity index. A key is claimed with putIfAbsent before the entity is stored,
+ * so two concurrent saves with the same key cannot both succeed.
+ */
+final class UniqueIndex<T extends BaseEntity> {
+    private final String name;
+    private final Function<? super T, ?> keyExtractor;
+    private final ConcurrentLongMap<Object> keysById = new ConcurrentLongMap<>();
+    private final Map<Object, T> entries = new ConcurrentHashMap<>();
+
+    UniqueIndex(String name, Function<? super T, ?> keyExtractor) {
+        this.name = name;
+        this.keyExtractor = keyExtractor;
+    }
+
+    /**
+     * Reserves the entity's key. Returns the key if this call inserted it (so it can be rolled
+     * back), null if there is no key or the entity already owned it.
+     */
+    Object claim(T entity) {
+        Object key = keyExtractor.apply(entity);
+        if (key == null) {
+            return null;
+        }
+        T owner = entries.putIfAbsent(key, entity);
+        if (owner == null) {
+            return key;
+        }
+        if (owner.getKey() != entity.getKey()) {
+            throw new DuplicateKeyException("Duplicate " + name + ": " + key);
+        }
+        return null;
+    }
+
+    void rollback(T entity, Object claimedKey) {
+        entries.remove(claimedKey, entity);
+    }
+
+    void update(T entity) {
+        Object newKey = keyExtractor.apply(entity);
+        Object oldKey = newKey == null ? keysById.remove(entity.getKey()) : keysById.put(entity.getKey(), newKey);
+        if (oldKey != null && !oldKey.equals(newKey)) {
+            release(oldKey, entity);
+        }
+        if (newKey != null) {
+            entries.put(newKey, entity);
+        }
+    }
+
+    void remove(T entity) {
+        Object oldKey = keysById.remove(entity.getKey());
+        if (oldKey != null) {
+            release(oldKey, entity);
+        }
+    }
+
+    Optional<T> get(Object key) {
+        return Optional.ofNullable(entries.get(key));
+    }
+
+    private void release(Object key, T entity) {
+        entries.computeIfPresent(key, (k, owner) -> owner.getKey() == entity.getKey() ? null : owner);
+    }
+}
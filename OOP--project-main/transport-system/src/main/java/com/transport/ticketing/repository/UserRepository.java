@@ -2,12 +2,21 @@ package com.transport.ticketing.repository;
 
 import com.transport.ticketing.model.User;
 
+import java.util.Locale;
 import java.util.Optional;
 
 public class UserRepository extends InMemoryCrudRepository<User> {
+    private static final String BY_EMAIL = "email";
+
+    public UserRepository() {
+        registerUniqueIndex(BY_EMAIL, u -> normalizeEmail(u.getEmail()));
+    }
+
     public Optional<User> findByEmail(String email) {
-        return findAll().stream()
-                .filter(u -> u.getEmail().equalsIgnoreCase(email))
-                .findFirst();
+        return findByUniqueIndex(BY_EMAIL, normalizeEmail(email));
+    }
+
+    private static String normalizeEmail(String email) {
+        return email == null ? null : email.toLowerCase(Locale.ROOT);
     }
 }
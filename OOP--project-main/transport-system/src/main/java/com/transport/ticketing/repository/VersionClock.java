@@ -0,0 +1,111 @@
+package com.transport.ticketing.repository;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Commit timestamps and open read snapshots shared by all repositories.
+ * <p>
+ * Writers hold the shared side of a commit lock while they install a change, so they never
+ * wait for each other; opening a snapshot takes the exclusive side for a moment, which makes
+ * every commit either fully before the snapshot or stamped after it. The clock only advances
+ * while snapshots are open, since versions are not recorded otherwise.
+ * <p>
+ * The commit lock is striped by entity key. Taking the shared side of a read-write lock is a
+ * CAS on its state word, so with a single lock every write on every core would contend for
+ * one cache line; a stripe is only shared with writers whose keys hash to it. The exclusive
+ * side takes every stripe in order, which is cheap enough for how rarely snapshots open.
+ */
+final class VersionClock {
+    static final long NO_READERS = Long.MAX_VALUE;
+
+    private static final int STRIPE_BITS = Integer.numberOfTrailingZeros(
+            Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1);
+    private static final ReentrantReadWriteLock[] commitLocks = new ReentrantReadWriteLock[1 << STRIPE_BITS];
+    private static final AtomicLong clock = new AtomicLong();
+    // Open snapshot timestamp -> number of snapshots opened at it.
+    private static final ConcurrentSkipListMap<Long, Integer> readers = new ConcurrentSkipListMap<>();
+    private static final List<WeakReference<InMemoryCrudRepository<?>>> repositories = new CopyOnWriteArrayList<>();
+
+    static {
+        for (int stripe = 0; stripe < commitLocks.length; stripe++) {
+            commitLocks[stripe] = new ReentrantReadWriteLock();
+        }
+    }
+
+    private VersionClock() {
+    }
+
+    /**
+     * The shared side of the commit lock stripe of the entity key. Any stripe keeps snapshots
+     * from opening while it is held.
+     */
+    static Lock commitLock(long key) {
+        // Fibonacci hashing: consecutive keys land on different stripes.
+        return commitLocks[(int) ((key * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - STRIPE_BITS))].readLock();
+    }
+
+    static long nextCommit() {
+        return clock.incrementAndGet();
+    }
+
+    /**
+     * Timestamp of the oldest open snapshot, or NO_READERS. Stable while a commit lock is held.
+     */
+    static long oldestReader() {
+        Map.Entry<Long, Integer> oldest = readers.firstEntry();
+        return oldest == null ? NO_READERS : oldest.getKey();
+    }
+
+    static void register(InMemoryCrudRepository<?> repository) {
+        repositories.add(new WeakReference<>(repository));
+    }
+
+    static long openReader() {
+        return exclusive(() -> {
+            long timestamp = clock.get();
+            readers.merge(timestamp, 1, Integer::sum);
+            return timestamp;
+        });
+    }
+
+    /**
+     * Runs the action with the exclusive side of every commit lock stripe, so no commit is in
+     * progress.
+     */
+    static <R> R exclusive(Supplier<R> action) {
+        int locked = 0;
+        try {
+            for (; locked < commitLocks.length; locked++) {
+                commitLocks[locked].writeLock().lock();
+            }
+            return action.get();
+        } finally {
+            while (locked > 0) {
+                commitLocks[--locked].writeLock().unlock();
+            }
+        }
+    }
+
+    static void closeReader(long timestamp) {
+        readers.computeIfPresent(timestamp, (key, count) -> count == 1 ? null : count - 1);
+        if (oldestReader() <= timestamp) {
+            // An older snapshot still needs everything this one did.
+            return;
+        }
+        repositories.removeIf(reference -> reference.get() == null);
+        for (WeakReference<InMemoryCrudRepository<?>> reference : repositories) {
+            InMemoryCrudRepository<?> repository = reference.get();
+            if (repository != null) {
+                repository.pruneVersions();
+            }
+        }
+    }
+}
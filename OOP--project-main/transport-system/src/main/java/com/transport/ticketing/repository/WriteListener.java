@@ -0,0 +1,15 @@
+package com.transport.ticketing.repository;
+
+import com.transport.ticketing.model.BaseEntity;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Receives every applied write of a repository, in per-id order. The returned future completes
+ * once the write is durable; save/deleteById wait for it after releasing the id.
+ */
+public interface WriteListener {
+    CompletableFuture<Void> saved(String repository, BaseEntity entity);
+
+    CompletableFuture<Void> deleted(String repository, String id);
+}
@@ -0,0 +1,147 @@
+package com.transport.ticketing.service;
+
+import com.transport.ticketing.model.Role;
+import com.transport.ticketing.model.Trip;
+import com.transport.ticketing.model.TripStatus;
+import com.transport.ticketing.model.User;
+import com.transport.ticketing.persistence.ArchivedTrip;
+import com.transport.ticketing.persistence.TripArchive;
+import com.transport.ticketing.repository.TicketRepository;
+import com.transport.ticketing.repository.TripPartitions;
+import com.transport.ticketing.repository.TripRepository;
+import com.transport.ticketing.repository.TripRequestRepository;
+import com.transport.ticketing.util.ErrorReporter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves finished trips out of the live repositories. A COMPLETED or CANCELLED trip whose
+ * arrival lies more than the retention window in the past is written to the
+ * {@link TripArchive} with its tickets and requests, and only then removed, so a crash in
+ * between leaves it live (and archived again by the next run) rather than lost.
+ */
+public class ArchiveService {
+    // Trips per archive segment batch, bounding what a run holds in memory at once.
+    private static final int BATCH_SIZE = 1000;
+
+    private final TripRepository trips;
+    private final TicketRepository tickets;
+    private final TripRequestRepository requests;
+    private final TripArchive archive;
+    private final Duration retention;
+    private ScheduledExecutorService archiver;
+    private NotificationCoordinator notificationCoordinator;
+
+    public ArchiveService(TripRepository trips,
+                          TicketRepository tickets,
+                          TripRequestRepository requests,
+                          TripArchive archive,
+                          Duration retention) {
+        this.trips = trips;
+        this.tickets = tickets;
+        this.requests = requests;
+        this.archive = archive;
+        this.retention = retention;
+    }
+
+    public void setNotificationCoordinator(NotificationCoordinator notificationCoordinator) {
+        this.notificationCoordinator = notificationCoordinator;
+    }
+
+    public int archiveExpired(User adminActor) {
+        SecurityGuard.requireRole(adminActor, Role.ADMIN);
+        try {
+            return archiveExpired(LocalDateTime.now());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Archives every trip that has been finished for longer than the retention window at the
+     * given time. Returns the number of trips archived.
+     */
+    public synchronized int archiveExpired(LocalDateTime now) throws IOException {
+        LocalDateTime cutoff = now.minus(retention);
+        List<Trip> expired = new ArrayList<>();
+        for (TripStatus status : List.of(TripStatus.COMPLETED, TripStatus.CANCELLED)) {
+            for (Trip trip : trips.findByStatus(status)) {
+                LocalDateTime end = trip.getArrival() != null ? trip.getArrival() : trip.getDeparture();
+                if (end != null && end.isBefore(cutoff)) {
+                    expired.add(trip);
+                }
+            }
+        }
+        for (int start = 0; start < expired.size(); start += BATCH_SIZE) {
+            List<ArchivedTrip> batch = new ArrayList<>();
+            for (Trip trip : expired.subList(start, Math.min(start + BATCH_SIZE, expired.size()))) {
+                batch.add(new ArchivedTrip(trip, tickets.findByTripId(trip.getId()), requests.findByTripId(trip.getId())));
+            }
+            archive.append(batch);
+            remove(batch);
+        }
+        return expired.size();
+    }
+
+    /**
+     * Deletes the batch from the live repositories, waiting for durability once for all the
+     * tickets and requests and once for the trips. The trips go last: a run that fails before
+     * finds them live again and archives what is left, which the archive merges by key.
+     */
+    private void remove(List<ArchivedTrip> batch) {
+        List<CompletableFuture<Void>> removed = new ArrayList<>();
+        for (ArchivedTrip archived : batch) {
+            archived.tickets().forEach(ticket -> removed.add(tickets.deleteDeferred(ticket.getKey())));
+            archived.requests().forEach(request -> removed.add(requests.deleteDeferred(request.getKey())));
+        }
+        TripPartitions.join(CompletableFuture.allOf(removed.toArray(CompletableFuture[]::new)));
+        List<Long> tripKeys = new ArrayList<>(batch.size());
+        for (ArchivedTrip archived : batch) {
+            tickets.forgetTrip(archived.trip().getId());
+            tripKeys.add(archived.trip().getKey());
+        }
+        trips.deleteAllById(tripKeys);
+        if (notificationCoordinator != null) {
+            batch.forEach(archived -> notificationCoordinator.onTripArchived(archived.trip().getId()));
+        }
+    }
+
+    /**
+     * Runs {@link #archiveExpired(LocalDateTime)} in the background every interval.
+     */
+    public synchronized void start(Duration interval) {
+        if (archiver != null) {
+            return;
+        }
+        archiver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = interval.toMillis();
+        archiver.scheduleWithFixedDelay(() -> {
+            try {
+                archiveExpired(LocalDateTime.now());
+            } catch (IOException | RuntimeException e) {
+                // Nothing was removed for the failed batch; the next run retries.
+                ErrorReporter.report("Archiving failed", e);
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (archiver != null) {
+            archiver.shutdownNow();
+            archiver = null;
+        }
+    }
+}
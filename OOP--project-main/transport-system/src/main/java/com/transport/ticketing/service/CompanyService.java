@@ -35,19 +35,19 @@ public class CompanyService {
             throw new AccessDeniedException("Company not owned by actor");
         }
         
-        if (name != null && !name.trim().isEmpty()) {
-            company.setName(name.trim());
-        }
-        if (commission != null) {
-            if (commission < 0) {
-                throw new ValidationException("Commission cannot be negative");
+        return companies.update(companyId, current -> {
+            if (name != null && !name.trim().isEmpty()) {
+                current.setName(name.trim());
             }
-            company.setCommission(commission);
-        }
-        if (contact != null && !contact.trim().isEmpty()) {
-            company.setContact(contact.trim());
-        }
-        
-        return companies.save(company);
+            if (commission != null) {
+                if (commission < 0) {
+                    throw new ValidationException("Commission cannot be negative");
+                }
+                current.setCommission(commission);
+            }
+            if (contact != null && !contact.trim().isEmpty()) {
+                current.setContact(contact.trim());
+            }
+        }).orElseThrow(() -> new NotFoundException("Company not found"));
     }
 }
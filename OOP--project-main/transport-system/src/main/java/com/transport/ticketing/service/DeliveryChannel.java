@@ -0,0 +1,24 @@
+package com.transport.ticketing.service;
+
+import com.transport.ticketing.model.Notification;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Sends notifications outside the system, e.g. through an e-mail or SMS gateway. Called by
+ * {@link NotificationDelivery} from its own thread, never from a request, with a batch of
+ * notifications for one recipient. Throwing fails the whole batch, which is retried later.
+ */
+public interface DeliveryChannel {
+    String name();
+
+    void deliver(String userId, List<Notification> batch) throws IOException;
+
+    /**
+     * Largest batch the gateway accepts for one recipient.
+     */
+    default int maxBatchSize() {
+        return 100;
+    }
+}
@@ -0,0 +1,181 @@
+package com.transport.ticketing.service;
+
+import com.transport.ticketing.model.Trip;
+import com.transport.ticketing.model.TripStatus;
+import com.transport.ticketing.repository.TripRepository;
+import com.transport.ticketing.util.ErrorReporter;
+import com.transport.ticketing.util.TimingWheel;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the upcoming-departure alert for trips with unsold seats once per configured horizon
+ * (e.g. 24 hours and 2 hours before departure), without scanning trips.
+ * <p>
+ * Tracking a trip puts one alarm per horizon on a timing wheel at departure minus horizon.
+ * Alarms are not removed when a trip is cancelled or rescheduled; a firing alarm re-reads the
+ * trip and is ignored unless the trip is still sellable at the departure it was armed for, so
+ * rescheduling only has to track the trip again. The smallest horizon alerted so far is kept
+ * on the trip itself, which makes the deduplication survive restarts and lets a trip that
+ * enters several horizons at once get a single alert.
+ */
+public class DepartureScheduler {
+    private static final Duration TICK = Duration.ofMinutes(1);
+    private static final int WHEEL_SLOTS = 1440;
+
+    private final TripRepository trips;
+    private final NotificationCoordinator coordinator;
+    private final List<Duration> horizons;
+    private final ZoneId zone;
+    private final TimingWheel<Alarm> alarms;
+    private ScheduledExecutorService ticker;
+
+    public DepartureScheduler(TripRepository trips, NotificationCoordinator coordinator, List<Duration> horizons) {
+        if (horizons.isEmpty() || horizons.stream().anyMatch(horizon -> horizon.isNegative() || horizon.isZero())) {
+            throw new IllegalArgumentException("Horizons must be positive");
+        }
+        this.trips = trips;
+        this.coordinator = coordinator;
+        this.horizons = horizons.stream().sorted(Comparator.reverseOrder()).distinct().toList();
+        this.zone = ZoneId.systemDefault();
+        this.alarms = new TimingWheel<>(TICK, WHEEL_SLOTS, System.currentTimeMillis());
+    }
+
+    /**
+     * Arms the alarms of a new or rescheduled trip. Horizons the trip is already inside fire
+     * on the next tick.
+     */
+    public void track(Trip trip) {
+        if (!isSellable(trip)) {
+            return;
+        }
+        for (Duration horizon : horizons) {
+            alarms.schedule(new Alarm(trip.getId(), trip.getDeparture()), toMillis(trip.getDeparture().minus(horizon)));
+        }
+    }
+
+    /**
+     * Arms every trip that has not departed yet. Called once at startup.
+     */
+    public void trackExisting() {
+        trips.findByDepartureBetween(LocalDateTime.now(), null).forEach(this::track);
+    }
+
+    /**
+     * Alerts the trips departing within the horizon that were not yet alerted for it or a
+     * smaller one, e.g. for a manual check. Returns how many trips were alerted.
+     */
+    public int alertWithin(Duration horizon, LocalDateTime now) {
+        int alerted = 0;
+        for (Trip trip : trips.findByDepartureBetween(now, now.plus(horizon))) {
+            if (alert(trip.getId(), trip.getDeparture(), horizon, now)) {
+                alerted++;
+            }
+        }
+        return alerted;
+    }
+
+    /**
+     * Fires the alarms due by the given time. Returns how many trips were alerted.
+     */
+    public int advance(LocalDateTime now) {
+        int[] alerted = {0};
+        alarms.advance(toMillis(now), alarm -> {
+            Duration due = smallestDueHorizon(alarm.departure(), now);
+            if (due != null && alert(alarm.tripId(), alarm.departure(), due, now)) {
+                alerted[0]++;
+            }
+        });
+        return alerted[0];
+    }
+
+    public int pendingAlarms() {
+        return alarms.size();
+    }
+
+    public synchronized void start() {
+        if (ticker != null) {
+            return;
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "departure-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = TICK.toMillis();
+        ticker.scheduleWithFixedDelay(() -> {
+            try {
+                advance(LocalDateTime.now());
+            } catch (RuntimeException e) {
+                ErrorReporter.report("Departure alerts failed", e);
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            ticker = null;
+        }
+    }
+
+    /**
+     * Records the horizon on the trip and sends the alert, unless the trip was cancelled,
+     * rescheduled away from the departure, or already alerted for this horizon or a smaller one.
+     */
+    private boolean alert(String tripId, LocalDateTime departure, Duration horizon, LocalDateTime now) {
+        Trip stored = trips.findById(tripId).orElse(null);
+        if (stored == null || !isDue(stored, departure, horizon, now)) {
+            // Stale or duplicate alarms are common; they must not cost a write.
+            return false;
+        }
+        boolean[] claimed = {false};
+        Trip trip = trips.update(tripId, current -> {
+            // Re-checked on every retry of the update.
+            claimed[0] = isDue(current, departure, horizon, now);
+            if (claimed[0]) {
+                current.setAlertedHorizon(horizon);
+            }
+        }).orElse(null);
+        if (trip == null || !claimed[0]) {
+            return false;
+        }
+        coordinator.notifyUpcomingWithUnsold(List.of(trip), now);
+        return true;
+    }
+
+    private static boolean isDue(Trip trip, LocalDateTime departure, Duration horizon, LocalDateTime now) {
+        return isSellable(trip)
+                && trip.getDeparture().equals(departure)
+                && trip.getDeparture().isAfter(now)
+                && (trip.getAlertedHorizon() == null || horizon.compareTo(trip.getAlertedHorizon()) < 0);
+    }
+
+    private Duration smallestDueHorizon(LocalDateTime departure, LocalDateTime now) {
+        Duration due = null;
+        for (Duration horizon : horizons) {
+            if (!departure.minus(horizon).isAfter(now)) {
+                due = horizon;
+            }
+        }
+        return due;
+    }
+
+    private static boolean isSellable(Trip trip) {
+        return trip.getStatus() == TripStatus.ACTIVE || trip.getStatus() == TripStatus.APPROVED;
+    }
+
+    private long toMillis(LocalDateTime time) {
+        return time.atZone(zone).toInstant().toEpochMilli();
+    }
+
+    private record Alarm(String tripId, LocalDateTime departure) {
+    }
+}
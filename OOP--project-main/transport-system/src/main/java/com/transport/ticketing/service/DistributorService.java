@@ -74,8 +74,8 @@ public class DistributorService {
             throw new AccessDeniedException("Not permitted to update distributor");
         }
         
-        updateProfileFields(distributor, name, commission, contact);
-        return distributors.save(distributor);
+        return distributors.update(distributorId, current -> updateProfileFields(current, name, commission, contact))
+                .orElseThrow(() -> new NotFoundException("Distributor not found"));
     }
 
     public Cashier updateCashier(User actor, String cashierId, String name, Double commission, String contact) {
@@ -97,8 +97,8 @@ public class DistributorService {
             throw new AccessDeniedException("Not permitted to update cashier");
         }
         
-        updateProfileFields(cashier, name, commission, contact);
-        return cashiers.save(cashier);
+        return cashiers.update(cashierId, current -> updateProfileFields(current, name, commission, contact))
+                .orElseThrow(() -> new NotFoundException("Cashier not found"));
     }
 
     private void updateProfileFields(Distributor distributor, String name, Double commission, String contact) {
@@ -0,0 +1,43 @@
+package com.transport.ticketing.service;
+
+import com.transport.ticketing.model.Notification;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Stub channel that appends each delivered notification as a tab-separated line to a local
+ * file, standing in for a real gateway when testing offline.
+ */
+public class FileDeliveryChannel implements DeliveryChannel {
+    private final String name;
+    private final Path file;
+
+    public FileDeliveryChannel(String name, Path file) throws IOException {
+        this.name = name;
+        this.file = file;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public void deliver(String userId, List<Notification> batch) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (Notification notification : batch) {
+                out.write(userId + '\t' + notification.getId() + '\t' + notification.getType() + '\t'
+                        + notification.getPayload());
+                out.newLine();
+            }
+        }
+    }
+}
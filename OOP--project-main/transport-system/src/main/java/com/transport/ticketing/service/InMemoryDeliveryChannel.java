@@ -0,0 +1,67 @@
+package com.transport.ticketing.service;
+
+import com.transport.ticketing.model.Notification;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stub channel for offline throughput and latency tests. It counts what it is given and can
+ * simulate a slow gateway and failed sends.
+ */
+public class InMemoryDeliveryChannel implements DeliveryChannel {
+    private final String name;
+    private final Duration latencyPerBatch;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+
+    public InMemoryDeliveryChannel(String name) {
+        this(name, Duration.ZERO);
+    }
+
+    public InMemoryDeliveryChannel(String name, Duration latencyPerBatch) {
+        this.name = name;
+        this.latencyPerBatch = latencyPerBatch;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public void deliver(String userId, List<Notification> batch) throws IOException {
+        if (!latencyPerBatch.isZero()) {
+            try {
+                Thread.sleep(latencyPerBatch.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while sending", e);
+            }
+        }
+        if (failuresLeft.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+            throw new IOException("Simulated " + name + " gateway failure");
+        }
+        batches.increment();
+        delivered.add(batch.size());
+    }
+
+    /**
+     * Makes the next given number of batches fail.
+     */
+    public void failNext(int count) {
+        failuresLeft.set(count);
+    }
+
+    public long batches() {
+        return batches.sum();
+    }
+
+    public long delivered() {
+        return delivered.sum();
+    }
+}
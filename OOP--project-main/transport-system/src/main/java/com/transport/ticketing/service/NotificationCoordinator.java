@@ -8,9 +8,20 @@ import com.transport.ticketing.repository.CashierRepository;
 import com.transport.ticketing.repository.CompanyRepository;
 import com.transport.ticketing.repository.DistributorRepository;
 import com.transport.ticketing.repository.TicketRepository;
+import com.transport.ticketing.util.EntityId;
+import com.transport.ticketing.util.ErrorReporter;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class NotificationCoordinator {
     private final NotificationService notifications;
@@ -18,59 +29,231 @@ public class NotificationCoordinator {
     private final CashierRepository cashiers;
     private final TicketRepository tickets;
     private final CompanyRepository companies;
+    private final Duration summaryWindow;
+    // Trips with sales not yet reflected in their summary, and who to tell about them.
+    private final Map<String, PendingSummary> pendingSummaries = new ConcurrentHashMap<>();
+    // Trip id -> its summary notification, updated in place while it stays unread.
+    private final Map<String, OpenSummary> openSummaries = new ConcurrentHashMap<>();
+    private ScheduledExecutorService debouncer;
+    private volatile NotificationFanOut fanOut;
 
     public NotificationCoordinator(NotificationService notifications,
                                    DistributorRepository distributors,
                                    CashierRepository cashiers,
                                    TicketRepository tickets,
                                    CompanyRepository companies) {
+        this(notifications, distributors, cashiers, tickets, companies, Duration.ZERO);
+    }
+
+    /**
+     * @param summaryWindow how long sales of a trip are collected before its sold summary is
+     *                      refreshed; zero refreshes it on every sale
+     */
+    public NotificationCoordinator(NotificationService notifications,
+                                   DistributorRepository distributors,
+                                   CashierRepository cashiers,
+                                   TicketRepository tickets,
+                                   CompanyRepository companies,
+                                   Duration summaryWindow) {
         this.notifications = notifications;
         this.distributors = distributors;
         this.cashiers = cashiers;
         this.tickets = tickets;
         this.companies = companies;
+        this.summaryWindow = summaryWindow;
+    }
+
+    /**
+     * Moves trip-wide fan-outs (cancellations, unsold alerts) off the calling thread.
+     */
+    public void setFanOut(NotificationFanOut fanOut) {
+        this.fanOut = fanOut;
     }
 
     public void onTripRequestSubmitted(TripRequest request, String companyOwnerUserId) {
         notifications.notify(companyOwnerUserId, NotificationType.TRIP_REQUESTED,
-                "Trip request submitted by distributor " + request.getDistributorId());
+                EntityId.parse(request.getDistributorId()));
     }
 
     public void onTripCancelled(Trip trip) {
-        List<String> distributorIds = trip.getApprovedDistributorIds();
-        for (String distributorId : distributorIds) {
-            distributors.findById(distributorId).ifPresent(distributor -> {
-                notifications.notify(distributor.getOwnerUserId(), NotificationType.TRIP_CANCELLED,
-                        "Trip " + trip.getId() + " cancelled");
-                cashiers.findByDistributorId(distributor.getId()).forEach(cashier ->
-                        notifications.notify(cashier.getUserId(), NotificationType.TRIP_CANCELLED,
-                                "Trip " + trip.getId() + " cancelled"));
+        closeSummary(trip.getId());
+        long tripKey = trip.getKey();
+        List<String> distributorIds = List.copyOf(trip.getApprovedDistributorIds());
+        dispatch(() -> {
+            Set<String> recipients = new LinkedHashSet<>();
+            for (String distributorId : distributorIds) {
+                distributors.findById(distributorId).ifPresent(distributor -> {
+                    recipients.add(distributor.getOwnerUserId());
+                    cashiers.findByDistributorId(distributor.getId()).forEach(cashier ->
+                            recipients.add(cashier.getUserId()));
+                });
+            }
+            notifications.notifyAll(recipients, NotificationType.TRIP_CANCELLED, tripKey);
+        });
+    }
+
+    /**
+     * Called once a finished trip has been moved to the archive.
+     */
+    public void onTripArchived(String tripId) {
+        closeSummary(tripId);
+    }
+
+    /**
+     * No more sales: publishes what is pending and stops tracking the trip's summary.
+     */
+    private void closeSummary(String tripId) {
+        flushSummary(tripId);
+        openSummaries.remove(tripId);
+    }
+
+    /**
+     * Called after every sale. Only marks the trip as changed; at most once per window the
+     * owner's summary is refreshed from the trip's seat counter, rewriting the previous summary
+     * while it is unread instead of adding another one.
+     */
+    public void sendTicketsSoldSummary(Trip trip, String companyOwnerUserId) {
+        if (summaryWindow.isZero()) {
+            publishSummary(trip, companyOwnerUserId);
+            return;
+        }
+        if (pendingSummaries.putIfAbsent(trip.getId(), new PendingSummary(trip, companyOwnerUserId)) == null) {
+            try {
+                debouncer().schedule(() -> flushSummary(trip.getId()), summaryWindow.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Stopping: publish right away rather than leave it pending.
+                flushSummary(trip.getId());
+            }
+        }
+    }
+
+    /**
+     * Publishes every pending summary now, e.g. before shutting down.
+     */
+    public void flushSummaries() {
+        pendingSummaries.keySet().forEach(this::flushSummary);
+    }
+
+    public synchronized void stop() {
+        if (debouncer != null) {
+            debouncer.shutdownNow();
+            debouncer = null;
+        }
+        flushSummaries();
+    }
+
+    private void flushSummary(String tripId) {
+        // Removed before reading the counter, so a sale after this point schedules a new flush.
+        PendingSummary pending = pendingSummaries.remove(tripId);
+        if (pending != null) {
+            try {
+                publishSummary(pending.trip(), pending.ownerUserId());
+            } catch (RuntimeException e) {
+                ErrorReporter.report("Sold summary for " + tripId + " failed", e);
+            }
+        }
+    }
+
+    /**
+     * One caller per trip publishes at a time. Who that is, and whether it has to go again, is
+     * decided inside {@code compute}; the save itself (a journaled, synced write) runs after it
+     * returns, so it never holds the map's lock. A sale while a publish is running only marks
+     * the summary stale, and the running publisher refreshes it once more.
+     */
+    private void publishSummary(Trip trip, String ownerUserId) {
+        boolean[] claimed = {false};
+        OpenSummary summary = openSummaries.compute(trip.getId(), (tripId, open) -> {
+            OpenSummary current = open == null ? new OpenSummary() : open;
+            current.stale = true;
+            claimed[0] = !current.publishing;
+            current.publishing = true;
+            return current;
+        });
+        boolean again = claimed[0];
+        while (again) {
+            openSummaries.computeIfPresent(trip.getId(), (tripId, open) -> {
+                if (open == summary) {
+                    open.stale = false;
+                }
+                return open;
             });
+            boolean published = false;
+            try {
+                long[] arguments = {trip.getKey(), tickets.soldSeats(trip)};
+                String open = summary.notificationId;
+                if (open == null || notifications.updateUnread(open, arguments).isEmpty()) {
+                    summary.notificationId = notifications.notify(ownerUserId,
+                            NotificationType.TICKETS_SOLD_SUMMARY, arguments).getId();
+                }
+                published = true;
+            } finally {
+                // A failed publish gives the turn up; the next sale claims it again.
+                boolean retry = published;
+                boolean[] stale = {false};
+                openSummaries.computeIfPresent(trip.getId(), (tripId, open) -> {
+                    if (open == summary) {
+                        stale[0] = retry && open.stale;
+                        open.publishing = stale[0];
+                    }
+                    return open;
+                });
+                again = stale[0];
+            }
         }
     }
 
-    public void sendTicketsSoldSummary(Trip trip, String companyOwnerUserId) {
-        long sold = tickets.findByTripId(trip.getId()).size();
-        notifications.notify(companyOwnerUserId, NotificationType.TICKETS_SOLD_SUMMARY,
-                "Trip " + trip.getId() + " sold " + sold + " tickets");
+    private synchronized ScheduledExecutorService debouncer() {
+        if (debouncer == null) {
+            debouncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "summary-debouncer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return debouncer;
     }
 
     public void notifyUpcomingWithUnsold(List<Trip> upcomingTrips, LocalDateTime now) {
-        for (Trip trip : upcomingTrips) {
-            long sold = tickets.findByTripId(trip.getId()).size();
-            if (sold < trip.getSeatsTotal()) {
-                // Notify company owner
-                companies.findById(trip.getOrganizerCompanyId()).ifPresent(company ->
-                        notifications.notify(company.getOwnerUserId(), NotificationType.UPCOMING_TRIP_UNSOLD,
-                                "Trip " + trip.getId() + " departing soon has unsold tickets"));
-                
-                // Notify distributors
-                for (String distributorId : trip.getApprovedDistributorIds()) {
-                    distributors.findById(distributorId).ifPresent(distributor ->
-                            notifications.notify(distributor.getOwnerUserId(), NotificationType.UPCOMING_TRIP_UNSOLD,
-                                    "Trip " + trip.getId() + " departing soon has unsold tickets"));
+        List<Trip> trips = List.copyOf(upcomingTrips);
+        dispatch(() -> {
+            for (Trip trip : trips) {
+                if (tickets.availableSeats(trip) > 0) {
+                    // Company owner and the owners of the distributors selling the trip
+                    Set<String> recipients = new LinkedHashSet<>();
+                    companies.findById(trip.getOrganizerCompanyId()).ifPresent(company ->
+                            recipients.add(company.getOwnerUserId()));
+                    for (String distributorId : trip.getApprovedDistributorIds()) {
+                        distributors.findById(distributorId).ifPresent(distributor ->
+                                recipients.add(distributor.getOwnerUserId()));
+                    }
+                    notifications.notifyAll(recipients, NotificationType.UPCOMING_TRIP_UNSOLD, trip.getKey());
                 }
             }
+        });
+    }
+
+    /**
+     * Runs a fan-out on the fan-out workers when they are set, otherwise on the caller.
+     */
+    private void dispatch(Runnable fanOutJob) {
+        NotificationFanOut current = fanOut;
+        if (current != null) {
+            current.submit(fanOutJob);
+        } else {
+            fanOutJob.run();
         }
     }
+
+    /**
+     * Fields are only changed inside {@code compute} on the trip's entry, except the id, which
+     * only the single publisher of the trip writes and reads.
+     */
+    private static final class OpenSummary {
+        private String notificationId;
+        private boolean publishing;
+        private boolean stale;
+    }
+
+    private record PendingSummary(Trip trip, String ownerUserId) {
+    }
 }
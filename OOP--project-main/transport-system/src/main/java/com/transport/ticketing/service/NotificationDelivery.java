@@ -0,0 +1,259 @@
+package com.transport.ticketing.service;
+
+import com.transport.ticketing.model.Notification;
+import com.transport.ticketing.util.ErrorReporter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delivers saved notifications through the registered channels without blocking the caller.
+ * <p>
+ * Sending only puts the notification in a bounded outbox, once per channel. A single worker
+ * drains the outbox at a fixed interval, groups what it took by channel and recipient, and
+ * hands each group to the channel as one batch. A failed batch is put back after an
+ * exponentially growing backoff and given up after the last attempt.
+ * <p>
+ * When the outbox is full the notification is not delivered outside the system and is
+ * counted as dropped; it is still in the user's inbox. Retries still waiting when the
+ * delivery is closed are dropped the same way.
+ */
+public class NotificationDelivery implements AutoCloseable {
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(5);
+
+    private final List<DeliveryChannel> channels;
+    private final BlockingQueue<Pending> outbox;
+    // Notification key -> latest content of an update waiting in the outbox.
+    private final Map<Long, Notification> queuedUpdates = new ConcurrentHashMap<>();
+    private final Duration initialBackoff;
+    private final int maxAttempts;
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+    private ScheduledExecutorService worker;
+
+    /**
+     * @param initialBackoff wait before the second attempt; doubled for every further one
+     * @param maxAttempts    attempts per notification and channel, including the first
+     */
+    public NotificationDelivery(List<DeliveryChannel> channels, int outboxCapacity,
+                                Duration initialBackoff, int maxAttempts) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("At least one attempt is required");
+        }
+        this.channels = List.copyOf(channels);
+        this.outbox = new ArrayBlockingQueue<>(outboxCapacity);
+        this.initialBackoff = initialBackoff;
+        this.maxAttempts = maxAttempts;
+    }
+
+    public void enqueue(Notification notification) {
+        long now = System.nanoTime();
+        for (DeliveryChannel channel : channels) {
+            offer(new Pending(channel, notification, 1, now, false));
+        }
+    }
+
+    /**
+     * Queues the new content of a notification changed in place. Updates are coalesced per
+     * notification: while one is waiting in the outbox, a later update only replaces what it
+     * will deliver, so a notification rewritten on every sale is sent once per flush.
+     */
+    public void enqueueUpdate(Notification notification) {
+        if (channels.isEmpty() || queuedUpdates.put(notification.getKey(), notification) != null) {
+            return;
+        }
+        long now = System.nanoTime();
+        boolean offered = false;
+        for (DeliveryChannel channel : channels) {
+            offered |= offer(new Pending(channel, notification, 1, now, true));
+        }
+        if (!offered) {
+            // Nothing waits to deliver it, so the next update must queue again.
+            queuedUpdates.remove(notification.getKey());
+        }
+    }
+
+    /**
+     * Delivers everything in the outbox now. Returns how many notifications were delivered.
+     */
+    public synchronized int flush() {
+        List<Pending> taken = new ArrayList<>();
+        outbox.drainTo(taken);
+        // Latest content of the updates taken. Removed from the queued ones before delivering,
+        // so an update arriving meanwhile is either included here or queued again.
+        Map<Long, Notification> updates = new HashMap<>();
+        for (int i = 0; i < taken.size(); i++) {
+            Pending pending = taken.get(i);
+            if (pending.update()) {
+                Notification latest = updates.computeIfAbsent(pending.notification().getKey(), queuedUpdates::remove);
+                if (latest != null) {
+                    taken.set(i, pending.with(latest));
+                }
+            }
+        }
+        Map<Route, List<Pending>> routes = new LinkedHashMap<>();
+        for (Pending pending : taken) {
+            routes.computeIfAbsent(new Route(pending.channel(), pending.notification().getUserId()),
+                    route -> new ArrayList<>()).add(pending);
+        }
+        int sent = 0;
+        for (Map.Entry<Route, List<Pending>> route : routes.entrySet()) {
+            List<Pending> all = route.getValue();
+            int size = Math.max(1, route.getKey().channel().maxBatchSize());
+            for (int from = 0; from < all.size(); from += size) {
+                sent += deliver(route.getKey(), all.subList(from, Math.min(all.size(), from + size)));
+            }
+        }
+        return sent;
+    }
+
+    public synchronized void start(Duration flushInterval) {
+        if (worker != null) {
+            return;
+        }
+        worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "notification-delivery");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = flushInterval.toMillis();
+        worker.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                ErrorReporter.report("Notification delivery failed", e);
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the worker and delivers what is left in the outbox, without further retries.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (worker != null) {
+                worker.shutdownNow();
+                worker = null;
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Latency runs from enqueue until the channel accepted the notification, retries included.
+     */
+    public Metrics metrics() {
+        long done = delivered.sum();
+        return new Metrics(outbox.size(), queued.sum(), done, batches.sum(), retried.sum(), failed.sum(),
+                dropped.sum(), done == 0 ? 0 : latencyNanos.sum() / done / 1_000_000.0,
+                maxLatencyNanos.get() / 1_000_000.0);
+    }
+
+    private int deliver(Route route, List<Pending> batch) {
+        try {
+            route.channel().deliver(route.userId(), batch.stream().map(Pending::notification).toList());
+        } catch (Exception e) {
+            retry(route, batch, e);
+            return 0;
+        }
+        long now = System.nanoTime();
+        for (Pending pending : batch) {
+            latencyNanos.add(now - pending.queuedAt());
+            maxLatencyNanos.accumulate(now - pending.queuedAt());
+        }
+        batches.increment();
+        delivered.add(batch.size());
+        return batch.size();
+    }
+
+    private void retry(Route route, List<Pending> batch, Exception cause) {
+        List<Pending> again = new ArrayList<>(batch.size());
+        int attempt = 0;
+        for (Pending pending : batch) {
+            if (pending.attempt() < maxAttempts) {
+                again.add(pending.nextAttempt());
+                attempt = Math.max(attempt, pending.attempt());
+            } else {
+                failed.increment();
+            }
+        }
+        if (again.size() < batch.size()) {
+            ErrorReporter.report("Delivery via " + route.channel().name() + " to " + route.userId()
+                    + " gave up", cause);
+        }
+        if (again.isEmpty()) {
+            return;
+        }
+        ScheduledExecutorService current;
+        synchronized (this) {
+            current = worker;
+        }
+        try {
+            if (current == null) {
+                throw new RejectedExecutionException("Delivery stopped");
+            }
+            current.schedule(() -> again.forEach(this::offer), backoff(attempt).toMillis(), TimeUnit.MILLISECONDS);
+            retried.add(again.size());
+        } catch (RejectedExecutionException e) {
+            dropped.add(again.size());
+        }
+    }
+
+    private Duration backoff(int attempt) {
+        Duration wait = initialBackoff.multipliedBy(1L << Math.min(attempt - 1, 20));
+        return wait.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : wait;
+    }
+
+    private boolean offer(Pending pending) {
+        if (outbox.offer(pending)) {
+            if (pending.attempt() == 1) {
+                queued.increment();
+            }
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    public record Metrics(int outboxDepth, long queued, long delivered, long batches, long retried,
+                          long failed, long dropped, double averageLatencyMillis, double maxLatencyMillis) {
+    }
+
+    private record Route(DeliveryChannel channel, String userId) {
+    }
+
+    /**
+     * @param update whether to deliver the latest queued update of the notification instead,
+     *               looked up when taken from the outbox; retries keep the content they failed with
+     */
+    private record Pending(DeliveryChannel channel, Notification notification, int attempt, long queuedAt,
+                           boolean update) {
+        Pending nextAttempt() {
+            return new Pending(channel, notification, attempt + 1, queuedAt, false);
+        }
+
+        Pending with(Notification latest) {
+            return new Pending(channel, latest, attempt, queuedAt, false);
+        }
+    }
+}
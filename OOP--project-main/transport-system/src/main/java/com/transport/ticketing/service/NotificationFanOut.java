@@ -0,0 +1,84 @@
+package com.transport.ticketing.service;
+
+import com.transport.ticketing.util.ErrorReporter;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs notification fan-out (finding the recipients of an event and writing their
+ * notifications) on a few worker threads, so the service call that raised the event returns
+ * immediately. The queue is bounded: when it is full the caller runs the job itself, which
+ * slows producers down instead of dropping notifications or growing without limit.
+ */
+public class NotificationFanOut implements AutoCloseable {
+    private final ThreadPoolExecutor workers;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder ranByCaller = new LongAdder();
+    private final LongAdder drainNanos = new LongAdder();
+    private final LongAccumulator maxDrainNanos = new LongAccumulator(Math::max, 0);
+
+    public NotificationFanOut(int workerCount, int queueCapacity) {
+        AtomicInteger threads = new AtomicInteger();
+        workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "notification-fan-out-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (job, executor) -> {
+                    ranByCaller.increment();
+                    job.run();
+                });
+    }
+
+    public void submit(Runnable job) {
+        long queuedAt = System.nanoTime();
+        submitted.increment();
+        workers.execute(() -> {
+            try {
+                job.run();
+            } catch (RuntimeException e) {
+                ErrorReporter.report("Notification fan-out failed", e);
+            } finally {
+                long latency = System.nanoTime() - queuedAt;
+                drainNanos.add(latency);
+                maxDrainNanos.accumulate(latency);
+                completed.increment();
+            }
+        });
+    }
+
+    /**
+     * Drain latency runs from submit until the job's notifications are written.
+     */
+    public Metrics metrics() {
+        long done = completed.sum();
+        return new Metrics(workers.getQueue().size(), submitted.sum(), done, ranByCaller.sum(),
+                done == 0 ? 0 : drainNanos.sum() / done / 1_000_000.0,
+                maxDrainNanos.get() / 1_000_000.0);
+    }
+
+    /**
+     * Stops accepting jobs and waits for the queued ones to finish.
+     */
+    @Override
+    public void close() {
+        workers.shutdown();
+        try {
+            workers.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public record Metrics(int queueDepth, long submitted, long completed, long ranByCaller,
+                          double averageDrainMillis, double maxDrainMillis) {
+    }
+}
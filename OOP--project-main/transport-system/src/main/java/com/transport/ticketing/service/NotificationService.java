@@ -1,32 +1,273 @@
 package com.transport.ticketing.service;
 
 import com.transport.ticketing.exception.NotFoundException;
+import com.transport.ticketing.exception.ValidationException;
 import com.transport.ticketing.model.Notification;
 import com.transport.ticketing.model.NotificationType;
 import com.transport.ticketing.repository.NotificationRepository;
+import com.transport.ticketing.util.ErrorReporter;
+import com.transport.ticketing.util.TimingWheel;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Sends and reads notifications, and keeps their number bounded: a read notification is
+ * removed once it has been read for longer than the read TTL, and each user keeps at most a
+ * fixed number of notifications per type, dropping read ones and then the oldest first.
+ * <p>
+ * Expiry does not scan the repository. Marking a notification read puts it on a timing wheel
+ * at its expiry time, and the sweeper only looks at the notifications due in each tick. The
+ * wheel's tick is sized so that one revolution covers the read TTL: an entry is looked at once,
+ * when it is due, at the cost of expiring up to one tick (1/512 of the TTL) late.
+ */
 public class NotificationService {
+    private static final Duration MIN_SWEEP_TICK = Duration.ofSeconds(1);
+    private static final int WHEEL_SLOTS = 512;
+    private static final Comparator<Notification> DROP_ORDER = Comparator
+            .comparing((Notification notification) -> notification.getReadAt() == null)
+            .thenComparing(Notification::getCreatedAt)
+            .thenComparingLong(Notification::getKey);
+
     private final NotificationRepository notifications;
+    private final Duration readTtl;
+    private final int maxPerUserAndType;
+    private final TimingWheel<Long> expiries;
+    private ScheduledExecutorService sweeper;
+    private volatile NotificationDelivery delivery;
 
     public NotificationService(NotificationRepository notifications) {
+        this(notifications, null, 0);
+    }
+
+    /**
+     * @param readTtl           how long a read notification is kept, or null to keep it
+     * @param maxPerUserAndType notifications kept per user and type, or 0 for no limit
+     */
+    public NotificationService(NotificationRepository notifications, Duration readTtl, int maxPerUserAndType) {
+        if (maxPerUserAndType < 0) {
+            throw new IllegalArgumentException("Notification cap must not be negative");
+        }
         this.notifications = notifications;
+        this.readTtl = readTtl;
+        this.maxPerUserAndType = maxPerUserAndType;
+        Duration tick = readTtl == null ? MIN_SWEEP_TICK : TimingWheel.tickFor(readTtl, WHEEL_SLOTS, MIN_SWEEP_TICK);
+        this.expiries = new TimingWheel<>(tick, WHEEL_SLOTS, System.currentTimeMillis());
+    }
+
+    /**
+     * Also delivers new notifications through the delivery's channels, in the background.
+     */
+    public void setDelivery(NotificationDelivery delivery) {
+        this.delivery = delivery;
     }
 
     public Notification notify(String userId, NotificationType type, String payload) {
-        Notification notification = new Notification(userId, type, payload);
-        return notifications.save(notification);
+        return send(new Notification(userId, type, payload));
+    }
+
+    /**
+     * Sends a notification rendered from the type's template when it is read.
+     */
+    public Notification notify(String userId, NotificationType type, long... arguments) {
+        return send(new Notification(userId, type, arguments));
+    }
+
+    private Notification send(Notification notification) {
+        Notification saved = notifications.save(notification);
+        if (maxPerUserAndType > 0) {
+            enforceCap(notification.getUserId(), notification.getType());
+        }
+        deliver(List.of(saved));
+        return saved;
+    }
+
+    /**
+     * Sends the same notification to every user, writing them to the repository in one batch.
+     * The notifications share one arguments array, which is never modified in place.
+     */
+    public List<Notification> notifyAll(Collection<String> userIds, NotificationType type, long... arguments) {
+        List<Notification> saved = notifications.saveAll(userIds.stream()
+                .map(userId -> new Notification(userId, type, arguments))
+                .toList());
+        if (maxPerUserAndType > 0) {
+            userIds.forEach(userId -> enforceCap(userId, type));
+        }
+        deliver(saved);
+        return saved;
     }
 
     public List<Notification> getForUser(String userId) {
         return notifications.findByUserId(userId);
     }
 
+    /**
+     * Replaces the template arguments of a notification the user has not read yet, and sends
+     * the new content through the delivery channels too. Empty if it was read or removed
+     * meanwhile, in which case the caller sends a new one.
+     */
+    public Optional<Notification> updateUnread(String notificationId, long... arguments) {
+        Optional<Notification> current = notifications.findById(notificationId);
+        if (current.isEmpty() || current.get().getReadAt() != null) {
+            return Optional.empty();
+        }
+        boolean[] unread = {false};
+        Optional<Notification> updated = notifications.update(notificationId, notification -> {
+            // Re-checked on every retry: the user may have read it since the lookup above.
+            unread[0] = notification.getReadAt() == null;
+            if (unread[0]) {
+                notification.setArguments(arguments);
+            }
+        });
+        if (!unread[0]) {
+            return Optional.empty();
+        }
+        NotificationDelivery outbound = delivery;
+        if (outbound != null) {
+            updated.ifPresent(outbound::enqueueUpdate);
+        }
+        return updated;
+    }
+
+    /**
+     * The user's newest notifications, newest first. Costs the same however many
+     * notifications other users have.
+     */
+    public List<Notification> getNewestForUser(String userId, int limit) {
+        if (limit <= 0) {
+            throw new ValidationException("Limit must be positive");
+        }
+        return notifications.findNewestByUserId(userId, limit);
+    }
+
+    public int countUnread(String userId) {
+        return notifications.countUnreadByUserId(userId);
+    }
+
     public Notification markRead(String notificationId) {
-        Notification notification = notifications.findById(notificationId)
+        Notification read = notifications.update(notificationId, Notification::markRead)
                 .orElseThrow(() -> new NotFoundException("Notification not found"));
-        notification.markRead();
-        return notifications.save(notification);
+        scheduleExpiry(read);
+        return read;
+    }
+
+    /**
+     * Marks every unread notification of the user read. Only walks that user's inbox. Returns
+     * how many were marked.
+     */
+    public int markAllRead(String userId) {
+        int marked = 0;
+        for (Notification unread : notifications.findUnreadByUserId(userId)) {
+            boolean[] changed = {false};
+            Optional<Notification> read = notifications.update(unread.getId(), notification -> {
+                // Re-checked on every retry: someone may have read it meanwhile.
+                changed[0] = notification.getReadAt() == null;
+                if (changed[0]) {
+                    notification.markRead();
+                }
+            });
+            if (read.isPresent() && changed[0]) {
+                scheduleExpiry(read.get());
+                marked++;
+            }
+        }
+        return marked;
+    }
+
+    /**
+     * Puts the notifications that were already read (e.g. recovered from the journal) on the
+     * expiry wheel. Called once at startup.
+     */
+    public void scheduleExisting() {
+        if (readTtl != null) {
+            notifications.forEach(this::scheduleExpiry);
+        }
+    }
+
+    /**
+     * Removes the read notifications whose TTL has run out by the given time. Returns how many
+     * were removed.
+     */
+    public int sweep(Instant now) {
+        int[] removed = {0};
+        expiries.advance(now.toEpochMilli(), key -> {
+            boolean expired = notifications.findById(key)
+                    .map(notification -> isExpired(notification, now))
+                    .orElse(false);
+            if (expired) {
+                notifications.deleteById(key);
+                removed[0]++;
+            }
+        });
+        return removed[0];
+    }
+
+    public synchronized void startSweeper() {
+        if (sweeper != null || readTtl == null) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "notification-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = expiries.tick().toMillis();
+        sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                sweep(Instant.now());
+            } catch (RuntimeException e) {
+                ErrorReporter.report("Notification sweep failed", e);
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopSweeper() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+    }
+
+    private void deliver(List<Notification> saved) {
+        NotificationDelivery current = delivery;
+        if (current != null) {
+            saved.forEach(current::enqueue);
+        }
+    }
+
+    private void scheduleExpiry(Notification notification) {
+        if (readTtl != null && notification.getReadAt() != null) {
+            expiries.schedule(notification.getKey(), notification.getReadAt().plus(readTtl).toEpochMilli());
+        }
+    }
+
+    private boolean isExpired(Notification notification, Instant now) {
+        // Marked read again since it was scheduled: a later wheel entry covers it.
+        return notification.getReadAt() != null && !notification.getReadAt().plus(readTtl).isAfter(now);
+    }
+
+    /**
+     * Concurrent sends to the same user and type may each drop a notification, leaving the
+     * user one or two below the cap.
+     */
+    private void enforceCap(String userId, NotificationType type) {
+        Collection<Notification> sameType = notifications.viewByUserIdAndType(userId, type);
+        int excess = sameType.size() - maxPerUserAndType;
+        if (excess > 0) {
+            // Sorted from a copy: the live view may change size while it is being sorted.
+            new ArrayList<>(sameType).stream()
+                    .sorted(DROP_ORDER)
+                    .limit(excess)
+                    .toList()
+                    .forEach(notification -> notifications.deleteById(notification.getKey()));
+        }
     }
 }
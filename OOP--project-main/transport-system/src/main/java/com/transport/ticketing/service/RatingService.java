@@ -37,26 +37,21 @@ public class RatingService {
         validateRating(rating);
 
         if (raterActor.getRole() == Role.ADMIN) {
-            company.setRating(rating);
-            return companies.save(company);
+            return saveRating(companyId, rating);
         }
 
         if (raterActor.getRole() == Role.DISTRIBUTOR) {
-            Distributor distributor = distributors.findAll().stream()
-                    .filter(d -> d.getOwnerUserId().equals(raterActor.getId()))
-                    .findFirst()
+            Distributor distributor = distributors.findByOwnerUserId(raterActor.getId())
                     .orElseThrow(() -> new NotFoundException("Distributor not found for user"));
             
-            boolean hasApprovedTrips = trips.findAll().stream()
-                    .anyMatch(trip -> trip.getOrganizerCompanyId().equals(companyId) &&
-                            trip.isDistributorApproved(distributor.getId()));
+            boolean hasApprovedTrips = trips.findByOrganizer(companyId).stream()
+                    .anyMatch(trip -> trip.isDistributorApproved(distributor.getId()));
             
             if (!hasApprovedTrips) {
                 throw new AccessDeniedException("Can only rate companies you have worked with (approved trips)");
             }
             
-            company.setRating(rating);
-            return companies.save(company);
+            return saveRating(companyId, rating);
         }
         
         throw new AccessDeniedException("Not permitted to rate company");
@@ -72,19 +67,15 @@ public class RatingService {
         
 
         if (raterActor.getRole() == Role.ADMIN) {
-            distributor.setRating(rating);
-            return distributors.save(distributor);
+            return saveDistributorRating(distributorId, rating);
         }
 
         if (raterActor.getRole() == Role.COMPANY) {
-            Company company = companies.findAll().stream()
-                    .filter(c -> c.getOwnerUserId().equals(raterActor.getId()))
-                    .findFirst()
+            Company company = companies.findByOwnerUserId(raterActor.getId())
                     .orElseThrow(() -> new NotFoundException("Company not found for user"));
             
-            boolean hasApprovedRequests = tripRequests.findAll().stream()
-                    .anyMatch(request -> request.getDistributorId().equals(distributorId) &&
-                            request.getStatus() == RequestStatus.APPROVED &&
+            boolean hasApprovedRequests = tripRequests.findByDistributorId(distributorId).stream()
+                    .anyMatch(request -> request.getStatus() == RequestStatus.APPROVED &&
                             trips.findById(request.getTripId())
                                     .map(trip -> trip.getOrganizerCompanyId().equals(company.getId()))
                                     .orElse(false));
@@ -93,8 +84,7 @@ public class RatingService {
                 throw new AccessDeniedException("Can only rate distributors whose requests you have approved");
             }
             
-            distributor.setRating(rating);
-            return distributors.save(distributor);
+            return saveDistributorRating(distributorId, rating);
         }
         
         throw new AccessDeniedException("Not permitted to rate distributor");
@@ -109,8 +99,7 @@ public class RatingService {
         validateRating(rating);
 
         if (raterActor.getRole() == Role.ADMIN) {
-            cashier.setRating(rating);
-            return cashiers.save(cashier);
+            return saveCashierRating(cashierId, rating);
         }
 
         if (raterActor.getRole() == Role.DISTRIBUTOR) {
@@ -121,13 +110,27 @@ public class RatingService {
                 throw new AccessDeniedException("Can only rate your own cashiers");
             }
             
-            cashier.setRating(rating);
-            return cashiers.save(cashier);
+            return saveCashierRating(cashierId, rating);
         }
         
         throw new AccessDeniedException("Not permitted to rate cashier");
     }
 
+    private Company saveRating(String companyId, double rating) {
+        return companies.update(companyId, company -> company.setRating(rating))
+                .orElseThrow(() -> new NotFoundException("Company not found"));
+    }
+
+    private Distributor saveDistributorRating(String distributorId, double rating) {
+        return distributors.update(distributorId, distributor -> distributor.setRating(rating))
+                .orElseThrow(() -> new NotFoundException("Distributor not found"));
+    }
+
+    private Cashier saveCashierRating(String cashierId, double rating) {
+        return cashiers.update(cashierId, cashier -> cashier.setRating(rating))
+                .orElseThrow(() -> new NotFoundException("Cashier not found"));
+    }
+
     private void validateRating(double rating) {
         if (rating < MIN_RATING || rating > MAX_RATING) {
             throw new ValidationException(
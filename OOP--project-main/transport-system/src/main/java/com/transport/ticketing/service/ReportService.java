@@ -8,9 +8,12 @@ import com.transport.ticketing.model.Role;
 import com.transport.ticketing.model.Ticket;
 import com.transport.ticketing.model.Trip;
 import com.transport.ticketing.model.User;
+import com.transport.ticketing.persistence.ArchivedTrip;
+import com.transport.ticketing.persistence.TripArchive;
 import com.transport.ticketing.repository.CashierRepository;
 import com.transport.ticketing.repository.CompanyRepository;
 import com.transport.ticketing.repository.DistributorRepository;
+import com.transport.ticketing.repository.ReadSnapshot;
 import com.transport.ticketing.repository.TicketRepository;
 import com.transport.ticketing.repository.TripRepository;
 
@@ -26,6 +29,7 @@ public class ReportService {
     private final CashierRepository cashiers;
     private final TripRepository trips;
     private final TicketRepository tickets;
+    private TripArchive archive;
 
     public ReportService(CompanyRepository companies,
                          DistributorRepository distributors,
@@ -39,9 +43,17 @@ public class ReportService {
         this.tickets = tickets;
     }
 
+    /**
+     * Makes archived trips reachable: reportTickets falls back to the archive for trips no
+     * longer live, and reportArchivedTrips reads it.
+     */
+    public void setArchive(TripArchive archive) {
+        this.archive = archive;
+    }
+
     public List<Company> reportCompaniesWithAvailableTrips(User distributorActor, LocalDateTime from, LocalDateTime to) {
         SecurityGuard.requireRole(distributorActor, Role.DISTRIBUTOR);
-        return trips.findActive().stream()
+        return trips.activeView().stream()
                 .filter(trip -> within(trip.getDeparture(), from, to))
                 .map(trip -> companies.findById(trip.getOrganizerCompanyId()))
                 .flatMap(Optional::stream)
@@ -54,17 +66,9 @@ public class ReportService {
             return distributors.findAll();
         }
         if (actor.getRole() == Role.COMPANY) {
-            Company company = companies.findAll().stream()
-                    .filter(c -> c.getOwnerUserId().equals(actor.getId()))
-                    .findFirst()
-                    .orElse(null);
-            if (company == null) {
-                return List.of();
-            }
-            final String companyId = company.getId();
-            return distributors.findAll().stream()
-                    .filter(d -> d.getCompanyId().equals(companyId))
-                    .collect(Collectors.toList());
+            return companies.findByOwnerUserId(actor.getId())
+                    .map(company -> distributors.findByCompanyId(company.getId()))
+                    .orElse(List.of());
         }
         throw new AccessDeniedException("Not permitted");
     }
@@ -79,47 +83,80 @@ public class ReportService {
         throw new AccessDeniedException("Not permitted");
     }
 
+    /**
+     * Reads the trip, its company and its tickets from one snapshot, so sales and cancellations
+     * running meanwhile never show up half applied. Trips that were archived are read from the
+     * archive instead.
+     */
     public List<Ticket> reportTickets(User actor, String tripId, Instant from, Instant to) {
-        List<Ticket> scoped = tickets.findByTripId(tripId).stream()
-                .filter(t -> within(t.getSoldAt(), from, to))
-                .collect(Collectors.toList());
+        try (ReadSnapshot snapshot = ReadSnapshot.open()) {
+            Trip trip = trips.findById(tripId, snapshot).orElse(null);
+            List<Ticket> tripTickets;
+            if (trip == null && archive != null) {
+                ArchivedTrip archived = archive.findByTripId(tripId).orElse(null);
+                trip = archived == null ? null : archived.trip();
+                tripTickets = archived == null ? List.of() : archived.tickets();
+            } else {
+                tripTickets = tickets.findByTripId(tripId, snapshot);
+            }
+            List<Ticket> scoped = tripTickets.stream()
+                    .filter(t -> within(t.getSoldAt(), from, to))
+                    .collect(Collectors.toList());
 
-        Trip trip = trips.findById(tripId).orElse(null);
-        if (trip == null) {
-            return scoped;
-        }
-        return switch (actor.getRole()) {
-            case COMPANY -> {
-                Company company = companies.findById(trip.getOrganizerCompanyId()).orElse(null);
-                if (company != null && company.getOwnerUserId().equals(actor.getId())) {
-                    yield scoped;
-                }
-                throw new AccessDeniedException("Not permitted");
+            if (trip == null) {
+                return scoped;
             }
-            case DISTRIBUTOR, CASHIER, ADMIN -> scoped;
-            default -> throw new AccessDeniedException("Not permitted");
-        };
+            return switch (actor.getRole()) {
+                case COMPANY -> {
+                    if (ownsTrip(actor, trip, snapshot)) {
+                        yield scoped;
+                    }
+                    throw new AccessDeniedException("Not permitted");
+                }
+                case DISTRIBUTOR, CASHIER, ADMIN -> scoped;
+                default -> throw new AccessDeniedException("Not permitted");
+            };
+        }
     }
 
     public List<Trip> reportTrips(User actor, LocalDateTime from, LocalDateTime to) {
-        return trips.findAll().stream()
-                .filter(trip -> within(trip.getDeparture(), from, to))
-                .filter(trip -> isTripVisible(actor, trip))
-                .collect(Collectors.toList());
+        try (ReadSnapshot snapshot = ReadSnapshot.open()) {
+            return trips.findByDepartureBetween(from, to, snapshot).stream()
+                    .filter(trip -> isTripVisible(actor, trip, snapshot))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Archived trips departing within [from, to]. Slower than reportTrips: the months in range
+     * are read from disk unless recently used.
+     */
+    public List<Trip> reportArchivedTrips(User actor, LocalDateTime from, LocalDateTime to) {
+        if (archive == null) {
+            return List.of();
+        }
+        try (ReadSnapshot snapshot = ReadSnapshot.open()) {
+            return archive.findByDepartureBetween(from, to).stream()
+                    .map(ArchivedTrip::trip)
+                    .filter(trip -> isTripVisible(actor, trip, snapshot))
+                    .collect(Collectors.toList());
+        }
     }
 
-    private boolean isTripVisible(User actor, Trip trip) {
+    private boolean isTripVisible(User actor, Trip trip, ReadSnapshot snapshot) {
         return switch (actor.getRole()) {
             case ADMIN -> true;
-            case COMPANY -> {
-                Company company = companies.findById(trip.getOrganizerCompanyId()).orElse(null);
-                yield company != null && company.getOwnerUserId().equals(actor.getId());
-            }
+            case COMPANY -> ownsTrip(actor, trip, snapshot);
             case DISTRIBUTOR, CASHIER -> true;
             default -> false;
         };
     }
 
+    private boolean ownsTrip(User actor, Trip trip, ReadSnapshot snapshot) {
+        Company company = companies.findById(trip.getOrganizerCompanyId(), snapshot).orElse(null);
+        return company != null && company.getOwnerUserId().equals(actor.getId());
+    }
+
     private boolean within(LocalDateTime time, LocalDateTime from, LocalDateTime to) {
         if (time == null) return false;
         if (from != null && time.isBefore(from)) return false;
@@ -16,8 +16,11 @@ import com.transport.ticketing.repository.CashierRepository;
 import com.transport.ticketing.repository.CompanyRepository;
 import com.transport.ticketing.repository.DistributorRepository;
 import com.transport.ticketing.repository.TicketRepository;
+import com.transport.ticketing.repository.TripPartitions;
 import com.transport.ticketing.repository.TripRepository;
 
+import java.util.concurrent.CompletableFuture;
+
 public class TicketService {
     private final TicketRepository tickets;
     private final TripRepository trips;
@@ -25,6 +28,7 @@ public class TicketService {
     private final DistributorRepository distributors;
     private final CompanyRepository companies;
     private NotificationCoordinator notificationCoordinator;
+    private TripPartitions partitions;
 
     public TicketService(TicketRepository tickets,
                          TripRepository trips,
@@ -42,6 +46,14 @@ public class TicketService {
         this.notificationCoordinator = notificationCoordinator;
     }
 
+    /**
+     * Runs the trip-bound part of every sale on the trip's partition writer, so sales of the
+     * same trip are applied one at a time. Use with the sharded trip and ticket repositories.
+     */
+    public void setPartitions(TripPartitions partitions) {
+        this.partitions = partitions;
+    }
+
     public Ticket sellTicket(User cashierActor, String cashierId, String tripId,
                              int seatNumber, String buyerName, String buyerContact) {
         SecurityGuard.requireRole(cashierActor, Role.CASHIER);
@@ -51,35 +63,56 @@ public class TicketService {
             throw new AccessDeniedException("Cashier not owned by actor");
         }
         Trip trip = trips.findById(tripId).orElseThrow(() -> new NotFoundException("Trip not found"));
+        Distributor distributor = distributors.findById(cashier.getDistributorId())
+                .orElseThrow(() -> new NotFoundException("Distributor not found"));
+        // The partition writer only claims the seat and stores the ticket; the wait for the
+        // journal happens here, so the writer can go on with the next sale meanwhile.
+        Ticket savedTicket = partitions == null
+                ? TripPartitions.join(sell(tripId, cashier, distributor, seatNumber, buyerName, buyerContact))
+                : partitions.callAndJoin(tripId,
+                        () -> sell(tripId, cashier, distributor, seatNumber, buyerName, buyerContact));
+
+        if (notificationCoordinator != null) {
+            Company company = companies.findById(trip.getOrganizerCompanyId()).orElse(null);
+            if (company != null) {
+                notificationCoordinator.sendTicketsSoldSummary(trip, company.getOwnerUserId());
+            }
+        }
+        
+        return savedTicket;
+    }
+
+    private CompletableFuture<Ticket> sell(String tripId, Cashier cashier, Distributor distributor,
+                                           int seatNumber, String buyerName, String buyerContact) {
+        // Read again on the partition writer: trip status changes run there too, so a trip
+        // cancelled before this sale is seen here, and one cancelled after it finds the ticket.
+        Trip trip = trips.findById(tripId).orElseThrow(() -> new NotFoundException("Trip not found"));
         if (trip.getStatus() != TripStatus.ACTIVE && trip.getStatus() != TripStatus.APPROVED) {
             throw new ValidationException("Trip not sellable in status " + trip.getStatus());
         }
-        Distributor distributor = distributors.findById(cashier.getDistributorId())
-                .orElseThrow(() -> new NotFoundException("Distributor not found"));
         if (!trip.isDistributorApproved(distributor.getId())) {
             throw new AccessDeniedException("Distributor not approved for this trip");
         }
         if (seatNumber <= 0 || seatNumber > trip.getSeatsTotal()) {
             throw new ValidationException("Seat number out of range");
         }
-        tickets.findByTripIdAndSeat(trip.getId(), seatNumber).ifPresent(t -> {
+        if (!tickets.claimSeat(trip, seatNumber)) {
             throw new ValidationException("Seat already sold");
-        });
-        long buyerCount = tickets.countByTripAndBuyer(trip.getId(), buyerName);
-        if (buyerCount >= trip.getPerPersonLimit()) {
+        }
+        if (!tickets.reservePurchase(trip, buyerName)) {
+            tickets.releaseSeat(trip, seatNumber);
             throw new ValidationException("Buyer reached per-person limit");
         }
-        Ticket ticket = new Ticket(trip.getId(), seatNumber, cashier.getId(), buyerName, buyerContact);
-        ticket.setStatus(TicketStatus.CONFIRMED);
-        Ticket savedTicket = tickets.save(ticket);
-
-        if (notificationCoordinator != null) {
-            Company company = companies.findById(trip.getOrganizerCompanyId()).orElse(null);
-            if (company != null) {
-                notificationCoordinator.sendTicketsSoldSummary(trip, company.getOwnerUserId());
-            }
+        Ticket ticket;
+        try {
+            ticket = new Ticket(trip.getId(), seatNumber, cashier.getId(), buyerName, buyerContact);
+            ticket.setStatus(TicketStatus.CONFIRMED);
+        } catch (RuntimeException ex) {
+            tickets.releasePurchase(trip, buyerName);
+            tickets.releaseSeat(trip, seatNumber);
+            throw ex;
         }
-        
-        return savedTicket;
+        // Releases the seat and buyer slot itself, and only if the ticket was not stored.
+        return tickets.saveReservedDeferred(ticket);
     }
 }
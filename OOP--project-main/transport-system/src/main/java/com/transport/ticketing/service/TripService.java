@@ -13,12 +13,15 @@ import com.transport.ticketing.model.TripStatus;
 import com.transport.ticketing.model.User;
 import com.transport.ticketing.repository.CompanyRepository;
 import com.transport.ticketing.repository.DistributorRepository;
+import com.transport.ticketing.repository.TripPartitions;
 import com.transport.ticketing.repository.TripRepository;
 import com.transport.ticketing.repository.TripRequestRepository;
 import com.transport.ticketing.service.NotificationCoordinator;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 public class TripService {
     private final TripRepository trips;
@@ -26,6 +29,8 @@ public class TripService {
     private final CompanyRepository companies;
     private final DistributorRepository distributors;
     private NotificationCoordinator notificationCoordinator;
+    private DepartureScheduler departureScheduler;
+    private TripPartitions partitions;
 
     public TripService(TripRepository trips,
                        TripRequestRepository requests,
@@ -41,6 +46,18 @@ public class TripService {
         this.notificationCoordinator = notificationCoordinator;
     }
 
+    public void setDepartureScheduler(DepartureScheduler departureScheduler) {
+        this.departureScheduler = departureScheduler;
+    }
+
+    /**
+     * Runs trip status changes on the trip's partition writer, the thread that also checks the
+     * status for each sale, so a sale cannot race a cancellation.
+     */
+    public void setPartitions(TripPartitions partitions) {
+        this.partitions = partitions;
+    }
+
     public Trip addTrip(User companyActor, String companyId, String type, String destination,
                         LocalDateTime departure, LocalDateTime arrival,
                         int seatsTotal, int perPersonLimit, List<String> transportTypes) {
@@ -55,7 +72,11 @@ public class TripService {
         }
         Trip trip = new Trip(company.getId(), type, destination, departure, arrival, seatsTotal, perPersonLimit, transportTypes);
         trip.setStatus(TripStatus.ACTIVE);
-        return trips.save(trip);
+        Trip saved = trips.save(trip);
+        if (departureScheduler != null) {
+            departureScheduler.track(saved);
+        }
+        return saved;
     }
 
     public TripRequest requestTrip(User distributorActor, String distributorId, String tripId) {
@@ -84,17 +105,20 @@ public class TripService {
         if (!company.getOwnerUserId().equals(companyActor.getId())) {
             throw new AccessDeniedException("Company not owned by actor");
         }
+        // Versioned read-modify-write: a concurrent cancel is re-read instead of overwritten.
+        Trip savedTrip = trip;
         if (approve) {
-            request.setStatus(RequestStatus.APPROVED);
-            trip.approveDistributor(request.getDistributorId());
-            if (trip.getStatus() == TripStatus.REQUESTED) {
-                trip.setStatus(TripStatus.APPROVED);
-            }
-        } else {
-            request.setStatus(RequestStatus.REJECTED);
+            savedTrip = updateTrip(trip.getId(), current -> {
+                current.approveDistributor(request.getDistributorId());
+                if (current.getStatus() == TripStatus.REQUESTED) {
+                    current.setStatus(TripStatus.APPROVED);
+                }
+            }).orElseThrow(() -> new NotFoundException("Trip not found"));
         }
-        requests.save(request);
-        return trips.save(trip);
+        RequestStatus decision = approve ? RequestStatus.APPROVED : RequestStatus.REJECTED;
+        requests.update(requestId, current -> current.setStatus(decision))
+                .orElseThrow(() -> new NotFoundException("Request not found"));
+        return savedTrip;
     }
 
     public Trip cancelTrip(User actor, String tripId) {
@@ -106,8 +130,8 @@ public class TripService {
         if (!companyOwner && !admin) {
             throw new AccessDeniedException("Not permitted to cancel");
         }
-        trip.setStatus(TripStatus.CANCELLED);
-        Trip savedTrip = trips.save(trip);
+        Trip savedTrip = updateTrip(tripId, current -> current.setStatus(TripStatus.CANCELLED))
+                .orElseThrow(() -> new NotFoundException("Trip not found"));
         
        
         if (notificationCoordinator != null) {
@@ -117,6 +141,42 @@ public class TripService {
         return savedTrip;
     }
 
+    /**
+     * Moves the trip to a new departure and arrival. Upcoming-departure alerts are re-armed for
+     * the new departure; alarms armed for the old one are ignored when they fire.
+     */
+    public Trip rescheduleTrip(User actor, String tripId, LocalDateTime departure, LocalDateTime arrival) {
+        Trip trip = trips.findById(tripId).orElseThrow(() -> new NotFoundException("Trip not found"));
+        Company company = companies.findById(trip.getOrganizerCompanyId())
+                .orElseThrow(() -> new NotFoundException("Company not found"));
+        boolean companyOwner = company.getOwnerUserId().equals(actor.getId()) && actor.getRole() == Role.COMPANY;
+        boolean admin = actor.getRole() == Role.ADMIN;
+        if (!companyOwner && !admin) {
+            throw new AccessDeniedException("Not permitted to reschedule");
+        }
+        if (departure == null || arrival == null || !arrival.isAfter(departure)) {
+            throw new ValidationException("Arrival must be after departure");
+        }
+        Trip savedTrip = updateTrip(tripId, current -> {
+            if (current.getStatus() == TripStatus.CANCELLED || current.getStatus() == TripStatus.COMPLETED) {
+                throw new ValidationException("Cannot reschedule cancelled or completed trips");
+            }
+            current.setDeparture(departure);
+            current.setArrival(arrival);
+            current.setAlertedHorizon(null);
+        }).orElseThrow(() -> new NotFoundException("Trip not found"));
+        if (departureScheduler != null) {
+            departureScheduler.track(savedTrip);
+        }
+        return savedTrip;
+    }
+
+    private Optional<Trip> updateTrip(String tripId, Consumer<Trip> change) {
+        return partitions == null
+                ? trips.update(tripId, change)
+                : partitions.call(tripId, () -> trips.update(tripId, change));
+    }
+
     public Trip getTrip(String id) {
         return trips.findById(id).orElseThrow(() -> new NotFoundException("Trip not found"));
     }
@@ -1,5 +1,6 @@
 package com.transport.ticketing.service;
 
+import com.transport.ticketing.exception.DuplicateKeyException;
 import com.transport.ticketing.exception.ValidationException;
 import com.transport.ticketing.model.Role;
 import com.transport.ticketing.model.User;
@@ -15,12 +16,16 @@ public class UserService {
     }
 
     public User createUser(String email, String displayName, Role role) {
-        Optional<User> existing = users.findByEmail(email);
-        if (existing.isPresent()) {
+        if (users.findByEmail(email).isPresent()) {
             throw new ValidationException("Email already exists");
         }
         User user = new User(email, displayName, role);
-        return users.save(user);
+        try {
+            // The repository's unique email index makes check-and-insert a single atomic step.
+            return users.save(user);
+        } catch (DuplicateKeyException ex) {
+            throw new ValidationException("Email already exists");
+        }
     }
 
     public Optional<User> findByEmail(String email) {
@@ -0,0 +1,29 @@
+package com.transport.ticketing.util;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Makes renames and new files in a directory durable. A file that was fsynced and then moved
+ * into place can still vanish in a crash until its directory entry is on disk too, so callers
+ * sync the directory before relying on the rename, e.g. before deleting what the file replaces.
+ */
+public final class DirectorySync {
+    private DirectorySync() {
+    }
+
+    public static void sync(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            // Platforms that cannot open a directory (Windows) make renames durable themselves.
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+}
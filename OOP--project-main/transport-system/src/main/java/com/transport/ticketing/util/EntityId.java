@@ -0,0 +1,105 @@
+package com.transport.ticketing.util;
+
+/**
+ * Numeric entity ids. An id is a long with the entity type in the top 8 bits and the sequence
+ * number in the remaining 56, so it can be stored, hashed and compared without a String.
+ * The textual form ("ticket-42") is only produced for display and parsed back at the CLI.
+ * The value 0 is never a valid id.
+ */
+public final class EntityId {
+    private static final int TYPE_SHIFT = 56;
+    private static final long SEQUENCE_MASK = (1L << TYPE_SHIFT) - 1;
+
+    public enum Type {
+        TRIP("trip"),
+        TICKET("ticket"),
+        REQUEST("req"),
+        NOTIFICATION("notif"),
+        COMPANY("comp"),
+        DISTRIBUTOR("dist"),
+        CASHIER("cash"),
+        USER("user");
+
+        private static final Type[] VALUES = values();
+
+        private final String prefix;
+
+        Type(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        private int tag() {
+            return ordinal() + 1;
+        }
+
+        private static Type ofPrefix(String prefix) {
+            for (Type type : VALUES) {
+                if (type.prefix.equals(prefix)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    private EntityId() {
+    }
+
+    public static long of(Type type, long sequence) {
+        if (sequence <= 0 || sequence > SEQUENCE_MASK) {
+            throw new IllegalArgumentException("Sequence out of range: " + sequence);
+        }
+        return ((long) type.tag() << TYPE_SHIFT) | sequence;
+    }
+
+    public static Type type(long id) {
+        int tag = (int) (id >>> TYPE_SHIFT);
+        return tag > 0 && tag <= Type.VALUES.length ? Type.VALUES[tag - 1] : null;
+    }
+
+    public static long sequence(long id) {
+        return id & SEQUENCE_MASK;
+    }
+
+    public static String format(long id) {
+        Type type = type(id);
+        if (type == null) {
+            throw new IllegalArgumentException("Not an entity id: " + id);
+        }
+        return type.prefix + "-" + sequence(id);
+    }
+
+    /**
+     * Parses the textual form, returning 0 when the text is not a well-formed id.
+     */
+    public static long parse(String text) {
+        if (text == null) {
+            return 0;
+        }
+        int dash = text.lastIndexOf('-');
+        if (dash <= 0 || dash == text.length() - 1) {
+            return 0;
+        }
+        Type type = Type.ofPrefix(text.substring(0, dash));
+        if (type == null) {
+            return 0;
+        }
+        if (text.charAt(dash + 1) == '0') {
+            // Only the canonical form round-trips, so "ticket-007" is not "ticket-7".
+            return 0;
+        }
+        long sequence = 0;
+        for (int i = dash + 1; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9' || sequence > (SEQUENCE_MASK - (c - '0')) / 10) {
+                return 0;
+            }
+            sequence = sequence * 10 + (c - '0');
+        }
+        return of(type, sequence);
+    }
+}
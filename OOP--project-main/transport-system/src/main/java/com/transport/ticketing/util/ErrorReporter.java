@@ -0,0 +1,38 @@
+package com.transport.ticketing.util;
+
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * Single place where background work (snapshots, sweeps, alerts, notification delivery)
+ * reports failures that have no caller to throw to. The default handler prints them to
+ * standard error; an application or a test can install its own, e.g. to log or count them.
+ */
+public final class ErrorReporter {
+    private static final BiConsumer<String, Throwable> STDERR =
+            (context, error) -> System.err.println(context + ": " + error.getMessage());
+
+    private static volatile BiConsumer<String, Throwable> handler = STDERR;
+
+    private ErrorReporter() {
+    }
+
+    /**
+     * @param context what failed, e.g. "Snapshot failed"
+     */
+    public static void report(String context, Throwable error) {
+        try {
+            handler.accept(context, error);
+        } catch (RuntimeException e) {
+            // A broken handler must not take the background thread down with it.
+            STDERR.accept(context, error);
+        }
+    }
+
+    /**
+     * Replaces the handler, or restores the default one when null.
+     */
+    public static void setHandler(BiConsumer<String, Throwable> newHandler) {
+        handler = Objects.requireNonNullElse(newHandler, STDERR);
+    }
+}
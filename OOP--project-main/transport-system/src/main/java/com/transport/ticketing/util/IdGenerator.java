@@ -1,60 +1,199 @@
 package com.transport.ticketing.util;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
 import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Hands out entity ids. Each thread takes ids from its own block of BLOCK_SIZE sequence numbers
+ * and only touches the shared counter to lease the next block, so concurrent sales do not
+ * contend on it. When {@link #persistTo} is used, the end of every leased block is written to
+ * disk before any id from it is used, and a restart continues after that high-water mark;
+ * ids left unused in a block are skipped, never reissued.
+ * <p>
+ * Instances that must not collide with each other switch to {@link #useSnowflake} instead.
+ */
 public class IdGenerator {
-    private static final AtomicLong tripCounter = new AtomicLong(1);
-    private static final AtomicLong ticketCounter = new AtomicLong(1);
-    private static final AtomicLong requestCounter = new AtomicLong(1);
-    private static final AtomicLong notificationCounter = new AtomicLong(1);
-    private static final AtomicLong companyCounter = new AtomicLong(1);
-    private static final AtomicLong distributorCounter = new AtomicLong(1);
-    private static final AtomicLong cashierCounter = new AtomicLong(1);
-    private static final AtomicLong userCounter = new AtomicLong(1);
+    private static final int BLOCK_SIZE = 10_000;
+
+    private static final Map<EntityId.Type, AtomicLong> counters = new EnumMap<>(EntityId.Type.class);
+    private static final Map<EntityId.Type, Long> persisted = new EnumMap<>(EntityId.Type.class);
+    private static final ThreadLocal<Block[]> blocks = ThreadLocal.withInitial(IdGenerator::newBlocks);
+    // Bumped by reset() so threads drop blocks leased before it.
+    private static volatile int generation;
+    private static volatile Path highWaterFile;
+    private static volatile SnowflakeIdGenerator snowflake;
+
+    static {
+        for (EntityId.Type type : EntityId.Type.values()) {
+            counters.put(type, new AtomicLong(1));
+            persisted.put(type, 0L);
+        }
+    }
+
+    /**
+     * Next numeric id of the given type; see {@link EntityId}.
+     */
+    public static long nextKey(EntityId.Type type) {
+        SnowflakeIdGenerator nodeIds = snowflake;
+        if (nodeIds != null) {
+            return nodeIds.nextKey(type);
+        }
+        Block block = blocks.get()[type.ordinal()];
+        if (block.next == block.end || block.generation != generation) {
+            lease(type, block);
+        }
+        return EntityId.of(type, block.next++);
+    }
 
     public static String nextTripId() {
-        return "trip-" + tripCounter.getAndIncrement();
+        return EntityId.format(nextKey(EntityId.Type.TRIP));
     }
 
     public static String nextTicketId() {
-        return "ticket-" + ticketCounter.getAndIncrement();
+        return EntityId.format(nextKey(EntityId.Type.TICKET));
     }
 
     public static String nextRequestId() {
-        return "req-" + requestCounter.getAndIncrement();
+        return EntityId.format(nextKey(EntityId.Type.REQUEST));
     }
 
     public static String nextNotificationId() {
-        return "notif-" + notificationCounter.getAndIncrement();
+        return EntityId.format(nextKey(EntityId.Type.NOTIFICATION));
     }
 
     public static String nextCompanyId() {
-        return "comp-" + companyCounter.getAndIncrement();
+        return EntityId.format(nextKey(EntityId.Type.COMPANY));
     }
 
     public static String nextDistributorId() {
-        return "dist-" + distributorCounter.getAndIncrement();
+        return EntityId.format(nextKey(EntityId.Type.DISTRIBUTOR));
     }
 
     public static String nextCashierId() {
-        return "cash-" + cashierCounter.getAndIncrement();
+        return EntityId.format(nextKey(EntityId.Type.CASHIER));
     }
 
     public static String nextUserId() {
-        return "user-" + userCounter.getAndIncrement();
+        return EntityId.format(nextKey(EntityId.Type.USER));
+    }
+
+    /**
+     * Loads the high-water marks from the file (if it exists) and records every later block
+     * lease in it. Call once at startup, before any id is drawn.
+     */
+    public static synchronized void persistTo(Path file) throws IOException {
+        if (Files.exists(file)) {
+            Properties marks = new Properties();
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                marks.load(reader);
+            }
+            for (EntityId.Type type : EntityId.Type.values()) {
+                long mark = Long.parseLong(marks.getProperty(type.getPrefix(), "0"));
+                counters.get(type).accumulateAndGet(mark, Math::max);
+                persisted.put(type, mark);
+            }
+        }
+        highWaterFile = file;
+        generation++;
+    }
+
+    /**
+     * Draws every later id from the given node-aware generator, or from the block counters
+     * again when null. Restored ids passed to {@link #observe} are forwarded to it.
+     */
+    public static void useSnowflake(SnowflakeIdGenerator generator) {
+        snowflake = generator;
+    }
+
+    /**
+     * Move the matching counter past an id that already exists (e.g. one restored from disk).
+     * Blocks already leased are not affected, so this belongs before the first allocation.
+     */
+    public static void observe(String id) {
+        long key = EntityId.parse(id);
+        if (key == 0) {
+            return;
+        }
+        SnowflakeIdGenerator nodeIds = snowflake;
+        if (nodeIds != null) {
+            nodeIds.observe(key);
+            return;
+        }
+        counters.get(EntityId.type(key)).accumulateAndGet(EntityId.sequence(key) + 1, Math::max);
     }
 
     /**
      * Reset all counters (useful for testing/seed).
      */
     public static void reset() {
-        tripCounter.set(1);
-        ticketCounter.set(1);
-        requestCounter.set(1);
-        notificationCounter.set(1);
-        companyCounter.set(1);
-        distributorCounter.set(1);
-        cashierCounter.set(1);
-        userCounter.set(1);
+        counters.values().forEach(counter -> counter.set(1));
+        generation++;
+    }
+
+    private static void lease(EntityId.Type type, Block block) {
+        int current = generation;
+        long start = counters.get(type).getAndAdd(BLOCK_SIZE);
+        if (highWaterFile != null) {
+            // Durable before use: if this fails the block is abandoned, not handed out.
+            recordHighWater(type, start + BLOCK_SIZE);
+        }
+        block.next = start;
+        block.end = start + BLOCK_SIZE;
+        block.generation = current;
+    }
+
+    private static synchronized void recordHighWater(EntityId.Type type, long mark) {
+        if (highWaterFile == null || persisted.get(type) >= mark) {
+            return;
+        }
+        Properties marks = new Properties();
+        persisted.forEach((t, value) -> marks.setProperty(t.getPrefix(), Long.toString(value)));
+        marks.setProperty(type.getPrefix(), Long.toString(mark));
+        try {
+            StringWriter text = new StringWriter();
+            marks.store(text, "Id high-water marks; ids below these may already be in use");
+            Path temp = highWaterFile.resolveSibling(highWaterFile.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8)));
+                channel.force(true);
+            }
+            Files.move(temp, highWaterFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            DirectorySync.sync(highWaterFile.toAbsolutePath().getParent());
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot record id high-water mark", ex);
+        }
+        // Only now: a lease below a mark that never reached the disk must write its own.
+        persisted.put(type, mark);
+    }
+
+    private static Block[] newBlocks() {
+        Block[] perType = new Block[EntityId.Type.values().length];
+        for (int i = 0; i < perType.length; i++) {
+            perType[i] = new Block();
+        }
+        return perType;
+    }
+
+    /**
+     * Ids [next, end) leased by one thread for one type.
+     */
+    private static final class Block {
+        long next;
+        long end;
+        int generation = -1;
     }
 }
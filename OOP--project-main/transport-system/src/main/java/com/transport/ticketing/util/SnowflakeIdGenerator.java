@@ -0,0 +1,84 @@
+package com.transport.ticketing.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Time-ordered ids that stay unique across instances. The 56-bit sequence part of an
+ * {@link EntityId} is split into milliseconds since 2024-01-01 (41 bits, good until 2093), the
+ * node id (7 bits) and a per-millisecond counter (8 bits). Ids of one type therefore sort by
+ * creation time, and two nodes never produce the same id.
+ * <p>
+ * Allocation is a compare-and-set on one long per type. If the clock goes backwards, or more
+ * than 256 ids are needed within a millisecond, the generator keeps counting from its own last
+ * timestamp instead of waiting, so ids stay unique and increasing.
+ */
+public final class SnowflakeIdGenerator {
+    public static final int MAX_NODE_ID = (1 << 7) - 1;
+
+    private static final long EPOCH_MILLIS = 1_704_067_200_000L;
+    private static final int COUNTER_BITS = 8;
+    private static final int NODE_BITS = 7;
+    private static final long COUNTER_MASK = (1L << COUNTER_BITS) - 1;
+    private static final long NODE_MASK = (1L << NODE_BITS) - 1;
+
+    private final int nodeId;
+    private final LongSupplier clock;
+    // Per type: (timestamp << COUNTER_BITS) | counter of the last id handed out.
+    private final AtomicLongArray last = new AtomicLongArray(EntityId.Type.values().length);
+
+    public SnowflakeIdGenerator(int nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    public SnowflakeIdGenerator(int nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeId = nodeId;
+        this.clock = clock;
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    public long nextKey(EntityId.Type type) {
+        int index = type.ordinal();
+        while (true) {
+            long previous = last.get(index);
+            long now = Math.max(clock.getAsLong() - EPOCH_MILLIS, 1);
+            long previousTime = previous >>> COUNTER_BITS;
+            long next;
+            if (now > previousTime) {
+                next = now << COUNTER_BITS;
+            } else if ((previous & COUNTER_MASK) < COUNTER_MASK) {
+                // Same millisecond, or the clock went back: count on from the last timestamp.
+                next = previous + 1;
+            } else {
+                // Counter exhausted: borrow the next millisecond.
+                next = (previousTime + 1) << COUNTER_BITS;
+            }
+            if (last.compareAndSet(index, previous, next)) {
+                long time = next >>> COUNTER_BITS;
+                long sequence = (time << (NODE_BITS + COUNTER_BITS)) | ((long) nodeId << COUNTER_BITS)
+                        | (next & COUNTER_MASK);
+                return EntityId.of(type, sequence);
+            }
+        }
+    }
+
+    /**
+     * Moves past an id that already exists (e.g. one restored from disk), so a node restarted
+     * with its clock set back cannot reissue it. Ids from other nodes are ignored.
+     */
+    public void observe(long key) {
+        EntityId.Type type = EntityId.type(key);
+        long sequence = EntityId.sequence(key);
+        if (type == null || ((sequence >>> COUNTER_BITS) & NODE_MASK) != nodeId) {
+            return;
+        }
+        long observed = ((sequence >>> (NODE_BITS + COUNTER_BITS)) << COUNTER_BITS) | (sequence & COUNTER_MASK);
+        last.accumulateAndGet(type.ordinal(), observed, Math::max);
+    }
+}
@@ -0,0 +1,91 @@
+package com.transport.ticketing.util;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel: deadlines are rounded up to ticks and dropped into one of a fixed ring
+ * of slots, so scheduling is O(1) and each tick only looks at the items of one slot instead of
+ * everything pending. Items further away than one revolution wait in their slot for later
+ * rounds.
+ * <p>
+ * Items never fire early. They fire on the first {@link #advance} at or after their tick, or a
+ * revolution later if scheduled for a tick the wheel is passing at that very moment. There is
+ * no cancellation: consumers re-check an item when it fires.
+ */
+public final class TimingWheel<T> {
+    private final long tickMillis;
+    private final Queue<Entry<T>>[] slots;
+    private final AtomicInteger pending = new AtomicInteger();
+    // Next tick to process; only advanced by advance(), under this.
+    private volatile long currentTick;
+
+    public TimingWheel(Duration tick, int slotCount, long startMillis) {
+        if (tick.toMillis() <= 0 || slotCount <= 0) {
+            throw new IllegalArgumentException("Tick and slot count must be positive");
+        }
+        this.tickMillis = tick.toMillis();
+        this.slots = newSlots(slotCount);
+        for (int slot = 0; slot < slotCount; slot++) {
+            slots[slot] = new ConcurrentLinkedQueue<>();
+        }
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    /**
+     * The shortest tick (but at least {@code minimumTick}) at which {@code slotCount} slots
+     * span {@code horizon}, so that an item scheduled up to {@code horizon} ahead is looked at
+     * in a single revolution rather than once per revolution while it waits.
+     */
+    public static Duration tickFor(Duration horizon, int slotCount, Duration minimumTick) {
+        long millis = Math.floorDiv(horizon.toMillis() + slotCount - 1, slotCount);
+        return millis > minimumTick.toMillis() ? Duration.ofMillis(millis) : minimumTick;
+    }
+
+    public Duration tick() {
+        return Duration.ofMillis(tickMillis);
+    }
+
+    public void schedule(T item, long deadlineMillis) {
+        long tick = Math.max(Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis), currentTick);
+        slots[(int) Math.floorMod(tick, (long) slots.length)].add(new Entry<>(item, tick));
+        pending.incrementAndGet();
+    }
+
+    /**
+     * Processes every tick up to the given time, handing each due item to the consumer.
+     */
+    public synchronized void advance(long nowMillis, Consumer<? super T> expired) {
+        long target = Math.floorDiv(nowMillis, tickMillis);
+        // After a long pause one revolution visits every slot; later ticks would repeat them.
+        long from = Math.max(currentTick, target - slots.length + 1);
+        for (long tick = from; tick <= target; tick++) {
+            Iterator<Entry<T>> entries = slots[(int) Math.floorMod(tick, (long) slots.length)].iterator();
+            while (entries.hasNext()) {
+                Entry<T> entry = entries.next();
+                if (entry.tick <= target) {
+                    entries.remove();
+                    pending.decrementAndGet();
+                    expired.accept(entry.item);
+                }
+            }
+            currentTick = tick + 1;
+        }
+    }
+
+    public int size() {
+        return pending.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Queue<Entry<T>>[] newSlots(int count) {
+        return (Queue<Entry<T>>[]) new Queue<?>[count];
+    }
+
+    private record Entry<T>(T item, long tick) {
+    }
+}
@@ -0,0 +1,236 @@
+package com.transport.ticketing.service;
+
+import com.transport.ticketing.exception.ValidationException;
+import com.transport.ticketing.model.Cashier;
+import com.transport.ticketing.model.Company;
+import com.transport.ticketing.model.Distributor;
+import com.transport.ticketing.model.Role;
+import com.transport.ticketing.model.Ticket;
+import com.transport.ticketing.model.Trip;
+import com.transport.ticketing.model.User;
+import com.transport.ticketing.repository.CashierRepository;
+import com.transport.ticketing.repository.CompanyRepository;
+import com.transport.ticketing.repository.DistributorRepository;
+import com.transport.ticketing.repository.ShardedTicketRepository;
+import com.transport.ticketing.repository.ShardedTripRepository;
+import com.transport.ticketing.repository.TicketRepository;
+import com.transport.ticketing.repository.TripPartitions;
+import com.transport.ticketing.repository.TripRepository;
+import com.transport.ticketing.repository.TripRequestRepository;
+import com.transport.ticketing.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Races many cashiers over the seats of one trip. Every cashier tries every seat, so each seat
+ * is contended by all of them at once.
+ */
+@Timeout(value = 60, unit = TimeUnit.SECONDS)
+class TicketServiceConcurrencyTest {
+    private static final int CASHIERS = 32;
+    private static final int SEATS = 400;
+
+    private final UserRepository users = new UserRepository();
+    private final CompanyRepository companies = new CompanyRepository();
+    private final DistributorRepository distributors = new DistributorRepository();
+    private final CashierRepository cashiers = new CashierRepository();
+    private TripPartitions partitions;
+    private TripRepository trips;
+    private TicketRepository tickets;
+    private TicketService ticketService;
+    private TripService tripService;
+    private User companyUser;
+    private User distributorUser;
+    private Company company;
+    private Distributor distributor;
+    private final List<User> cashierUsers = new ArrayList<>();
+    private final List<Cashier> cashierList = new ArrayList<>();
+
+    @AfterEach
+    void closePartitions() {
+        if (partitions != null) {
+            partitions.close();
+        }
+    }
+
+    @Test
+    void everySeatIsSoldExactlyOnce() throws Exception {
+        setUp(null);
+        assertEverySeatSoldOnce();
+    }
+
+    @Test
+    void everySeatIsSoldExactlyOnceOnPartitionWriters() throws Exception {
+        setUp(new TripPartitions(4));
+        assertEverySeatSoldOnce();
+    }
+
+    @Test
+    void perPersonLimitHoldsUnderContention() throws Exception {
+        setUp(null);
+        int limit = 3;
+        Trip trip = approvedTrip(SEATS, limit);
+
+        AtomicInteger sold = race(cashier -> {
+            int ok = 0;
+            for (int seat = cashier + 1; seat <= SEATS; seat += CASHIERS) {
+                ok += trySell(cashier, trip, seat, "Same Buyer");
+            }
+            return ok;
+        });
+
+        assertEquals(limit, sold.get());
+        assertEquals(limit, tickets.countByTripAndBuyer(trip.getId(), "same buyer"));
+        assertEquals(limit, tickets.findByTripId(trip.getId()).size());
+        assertEquals(limit, tickets.soldSeats(trip));
+    }
+
+    @Test
+    void noSaleIsStoredAfterTheTripIsCancelled() throws Exception {
+        setUp(new TripPartitions(4));
+        Trip trip = approvedTrip(SEATS, SEATS);
+        AtomicInteger storedAtCancel = new AtomicInteger(-1);
+
+        AtomicInteger sold = race(cashier -> {
+            if (cashier == 0) {
+                while (tickets.findByTripId(trip.getId()).size() < SEATS / 10) {
+                    Thread.onSpinWait();
+                }
+                tripService.cancelTrip(companyUser, trip.getId());
+                storedAtCancel.set(tickets.findByTripId(trip.getId()).size());
+                return 0;
+            }
+            int ok = 0;
+            for (int seat = cashier; seat <= SEATS; seat += CASHIERS - 1) {
+                ok += trySell(cashier, trip, seat, "Buyer " + cashier);
+            }
+            return ok;
+        });
+
+        assertEquals(storedAtCancel.get(), sold.get());
+        assertEquals(sold.get(), tickets.findByTripId(trip.getId()).size());
+    }
+
+    private void assertEverySeatSoldOnce() throws Exception {
+        Trip trip = approvedTrip(SEATS, SEATS);
+
+        AtomicInteger sold = race(cashier -> {
+            int ok = 0;
+            for (int seat = 1; seat <= SEATS; seat++) {
+                ok += trySell(cashier, trip, seat, "Buyer " + cashier);
+            }
+            return ok;
+        });
+
+        List<Ticket> stored = tickets.findByTripId(trip.getId());
+        Set<Integer> seats = new HashSet<>();
+        for (Ticket ticket : stored) {
+            assertTrue(seats.add(ticket.getSeatNumber()), "Seat sold twice: " + ticket.getSeatNumber());
+        }
+        assertEquals(SEATS, sold.get());
+        assertEquals(SEATS, stored.size());
+        assertEquals(SEATS, tickets.soldSeats(trip));
+        assertEquals(0, tickets.availableSeats(trip));
+        assertEquals(0, tickets.firstFreeSeat(trip));
+    }
+
+    private int trySell(int cashier, Trip trip, int seat, String buyer) {
+        try {
+            ticketService.sellTicket(cashierUsers.get(cashier), cashierList.get(cashier).getId(),
+                    trip.getId(), seat, buyer, "0888");
+            return 1;
+        } catch (ValidationException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Starts every cashier at the same moment and returns the total number of sales.
+     */
+    private AtomicInteger race(CashierWork work) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(CASHIERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger sold = new AtomicInteger();
+        List<Future<?>> running = new ArrayList<>();
+        try {
+            for (int cashier = 0; cashier < CASHIERS; cashier++) {
+                int index = cashier;
+                running.add(pool.submit(() -> {
+                    start.await();
+                    sold.addAndGet(work.sell(index));
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : running) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return sold;
+    }
+
+    private Trip approvedTrip(int seats, int perPersonLimit) {
+        LocalDateTime departure = LocalDateTime.now().plusDays(1);
+        Trip trip = tripService.addTrip(companyUser, company.getId(), "Екскурзия", "София",
+                departure, departure.plusHours(5), seats, perPersonLimit, List.of("BUS"));
+        tripService.approveRequest(companyUser,
+                tripService.requestTrip(distributorUser, distributor.getId(), trip.getId()).getId(), true);
+        return trips.findById(trip.getId()).orElseThrow();
+    }
+
+    private void setUp(TripPartitions partitions) {
+        this.partitions = partitions;
+        if (partitions == null) {
+            trips = new TripRepository();
+            tickets = new TicketRepository();
+        } else {
+            trips = new ShardedTripRepository(partitions);
+            tickets = new ShardedTicketRepository(partitions, partition -> new TicketRepository());
+        }
+        UserService userService = new UserService(users);
+        CompanyService companyService = new CompanyService(companies);
+        DistributorService distributorService = new DistributorService(distributors, cashiers, companies);
+        tripService = new TripService(trips, new TripRequestRepository(), companies, distributors);
+        ticketService = new TicketService(tickets, trips, cashiers, distributors, companies);
+        if (partitions != null) {
+            ticketService.setPartitions(partitions);
+            tripService.setPartitions(partitions);
+        }
+
+        User admin = userService.createUser("admin@test", "Admin", Role.ADMIN);
+        companyUser = userService.createUser("company@test", "Company", Role.COMPANY);
+        distributorUser = userService.createUser("distributor@test", "Distributor", Role.DISTRIBUTOR);
+        company = companyService.createCompany(admin, "Компания", 1000, "fees", companyUser.getId());
+        distributor = distributorService.createDistributor(admin, company.getId(), distributorUser.getId(),
+                "Дистрибутор", 500, "fees");
+        for (int i = 0; i < CASHIERS; i++) {
+            User user = userService.createUser("cashier" + i + "@test", "Cashier " + i, Role.CASHIER);
+            cashierUsers.add(user);
+            cashierList.add(distributorService.createCashier(distributorUser, distributor.getId(),
+                    user.getId(), "Cashier " + i, 100, "fees"));
+        }
+    }
+
+    @FunctionalInterface
+    private interface CashierWork {
+        int sell(int cashier) throws Exception;
+    }
+}